@@ -0,0 +1,79 @@
+package com.amoura.benchmark;
+
+import com.amoura.module.chat.domain.ChatRoom;
+import com.amoura.module.chat.domain.Message;
+import com.amoura.module.chat.dto.MessageDTO;
+import com.amoura.module.chat.mapper.ChatMapper;
+import com.amoura.module.chat.repository.ChatReadWatermarkRepository;
+import com.amoura.module.chat.repository.MessageRepository;
+import com.amoura.module.profile.dto.PhotoDTO;
+import com.amoura.module.profile.service.PhotoService;
+import com.amoura.module.user.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo {@link ChatMapper#toMessageDTO} cho một trang tin nhắn; PhotoService trả avatar dựng sẵn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMapperBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private ChatMapper chatMapper;
+    private Message textMessage;
+    private List<Message> page;
+
+    @Setup
+    public void setUp() {
+        User user1 = SyntheticData.user(1L);
+        User user2 = SyntheticData.user(2L);
+        ChatRoom chatRoom = SyntheticData.chatRoom(10L, user1, user2);
+
+        PhotoService photoService = Stubs.of(PhotoService.class, Map.of(
+                "getUserAvatarById", args -> PhotoDTO.builder()
+                        .id((Long) args[0])
+                        .url("users/" + args[0] + "/avatar.jpg")
+                        .type("avatar")
+                        .build(),
+                "getUserAvatarUrl", args -> "users/" + args[0] + "/avatar.jpg"));
+        chatMapper = new ChatMapper(photoService, Stubs.empty(MessageRepository.class),
+                Stubs.empty(ChatReadWatermarkRepository.class));
+        ReflectionTestUtils.setField(chatMapper, "baseUrl", "http://localhost:8080/api/files");
+
+        textMessage = SyntheticData.message(100L, chatRoom, user1, false);
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(SyntheticData.message(1000L + i, chatRoom, i % 2 == 0 ? user1 : user2, i % 10 == 0));
+        }
+    }
+
+    @Benchmark
+    public MessageDTO toMessageDTO() {
+        return chatMapper.toMessageDTO(textMessage);
+    }
+
+    @Benchmark
+    public List<MessageDTO> toMessageDTOPage() {
+        return chatMapper.toMessageDTOList(page);
+    }
+}
@@ -0,0 +1,193 @@
+package com.amoura.benchmark;
+
+import com.amoura.module.chat.service.ChatService;
+import com.amoura.module.matching.dto.UserRecommendationDTO;
+import com.amoura.module.matching.repository.CandidateProjection;
+import com.amoura.module.matching.repository.CandidateRepository;
+import com.amoura.module.matching.repository.MatchRepository;
+import com.amoura.module.matching.repository.SwipeRepository;
+import com.amoura.module.matching.service.AIServiceCircuitBreaker;
+import com.amoura.module.matching.service.AIServiceClient;
+import com.amoura.module.matching.service.CandidateIndex;
+import com.amoura.module.matching.service.InMemoryNearbyCandidateSearch;
+import com.amoura.module.matching.service.InboundLikeIndex;
+import com.amoura.module.matching.service.MatchPairLocks;
+import com.amoura.module.matching.service.MatchingServiceImpl;
+import com.amoura.module.matching.service.ProfileCardAssembler;
+import com.amoura.module.matching.service.RecommendationDeckCache;
+import com.amoura.module.matching.service.SwipeWriteBehindQueue;
+import com.amoura.module.matching.service.SwipedSetCache;
+import com.amoura.module.notification.service.NotificationService;
+import com.amoura.module.profile.domain.Location;
+import com.amoura.module.profile.domain.Photo;
+import com.amoura.module.profile.domain.Profile;
+import com.amoura.module.profile.domain.UserInterest;
+import com.amoura.module.profile.domain.UserPet;
+import com.amoura.module.profile.repository.LocationRepository;
+import com.amoura.module.profile.repository.PhotoRepository;
+import com.amoura.module.profile.repository.ProfileRepository;
+import com.amoura.module.profile.repository.UserInterestRepository;
+import com.amoura.module.profile.repository.UserPetRepository;
+import com.amoura.module.user.domain.User;
+import com.amoura.module.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Đo luồng gợi ý của {@link MatchingServiceImpl} với repository giả lập trong bộ nhớ:
+ * đọc bộ bài dựng sẵn, lọc đã swipe và dựng card hàng loạt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingBenchmark {
+
+    private static final long CURRENT_USER_ID = 1L;
+
+    @Param({"5000"})
+    private int users;
+
+    @Param({"500"})
+    private int swipedByCurrentUser;
+
+    private MatchingServiceImpl matchingService;
+    private String currentUserEmail;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<Long, User> usersById = new HashMap<>();
+        Map<Long, Profile> profiles = new HashMap<>();
+        Map<Long, Location> locations = new HashMap<>();
+        Map<Long, List<Photo>> photos = new HashMap<>();
+        Map<Long, List<UserInterest>> interests = new HashMap<>();
+        Map<Long, List<UserPet>> pets = new HashMap<>();
+        List<CandidateProjection> candidates = new ArrayList<>(users);
+
+        for (long id = 1; id <= users; id++) {
+            User user = SyntheticData.user(id);
+            Profile profile = SyntheticData.profile(user, random);
+            Location location = SyntheticData.location(user, random);
+            usersById.put(id, user);
+            profiles.put(id, profile);
+            locations.put(id, location);
+            photos.put(id, SyntheticData.photos(user, 4));
+            interests.put(id, SyntheticData.interests(user, 5));
+            pets.put(id, SyntheticData.pets(user, 2));
+            candidates.add(SyntheticData.candidate(profile, location));
+        }
+        currentUserEmail = usersById.get(CURRENT_USER_ID).getEmail();
+
+        List<Long> swiped = new ArrayList<>(swipedByCurrentUser);
+        for (long id = 2; id < 2 + swipedByCurrentUser; id++) {
+            swiped.add(id);
+        }
+
+        UserRepository userRepository = Stubs.of(UserRepository.class, Map.of(
+                "findByEmail", args -> Optional.of(usersById.get(CURRENT_USER_ID))));
+        CandidateRepository candidateRepository = Stubs.of(CandidateRepository.class, Map.of(
+                "findAllCandidates", args -> candidates,
+                "findCardUsersByIdIn", args -> collect((Collection<?>) args[0],
+                        id -> usersById.containsKey(id) ? SyntheticData.cardUser(usersById.get(id)) : null)));
+        SwipeRepository swipeRepository = Stubs.of(SwipeRepository.class, Map.of(
+                "findTargetUserIdsByInitiatorId", args -> swiped));
+
+        ProfileCardAssembler assembler = new ProfileCardAssembler(
+                Stubs.of(ProfileRepository.class, Map.of(
+                        "findAllById", args -> collect((Iterable<?>) args[0], profiles::get))),
+                Stubs.of(UserInterestRepository.class, Map.of(
+                        "findWithInterestByUserIdIn", args -> flatten((Collection<?>) args[0], interests::get))),
+                Stubs.of(UserPetRepository.class, Map.of(
+                        "findWithPetByUserIdIn", args -> flatten((Collection<?>) args[0], pets::get))),
+                Stubs.of(PhotoRepository.class, Map.of(
+                        "findByUserIdIn", args -> flatten((Collection<?>) args[0], photos::get))),
+                Stubs.of(LocationRepository.class, Map.of(
+                        "findByUserIdIn", args -> collect((Collection<?>) args[0], locations::get))),
+                candidateRepository);
+
+        CandidateIndex candidateIndex = new CandidateIndex(candidateRepository);
+        candidateIndex.rebuild();
+        SwipedSetCache swipedSetCache = new SwipedSetCache(swipeRepository, 10_000);
+
+        // Mạch AI luôn mở: benchmark không phụ thuộc mạng
+        AIServiceCircuitBreaker circuitBreaker = new AIServiceCircuitBreaker(1, Long.MAX_VALUE);
+        circuitBreaker.recordFailure();
+        AIServiceClient aiServiceClient = new AIServiceClient(new RestTemplate(), new RestTemplate(), circuitBreaker);
+        RecommendationDeckCache deckCache = new RecommendationDeckCache(
+                aiServiceClient, candidateIndex, swipedSetCache, Runnable::run, 10_000, 60, 20);
+
+        matchingService = new MatchingServiceImpl(
+                userRepository,
+                swipeRepository,
+                Stubs.empty(MatchRepository.class),
+                Stubs.empty(NotificationService.class),
+                Stubs.empty(ChatService.class),
+                candidateIndex,
+                swipedSetCache,
+                deckCache,
+                new SwipeWriteBehindQueue(null, new SimpleMeterRegistry(), "sync", "unused.log", 1, 1, 1),
+                new InboundLikeIndex(swipeRepository, 10_000),
+                new MatchPairLocks(),
+                assembler,
+                new InMemoryNearbyCandidateSearch(candidateIndex));
+
+        // Dựng sẵn bộ bài để đo trạng thái ổn định
+        matchingService.getRecommendedUsers(currentUserEmail);
+    }
+
+    @Benchmark
+    public List<UserRecommendationDTO> recommendations() {
+        return matchingService.getRecommendedUsers(currentUserEmail);
+    }
+
+    @Benchmark
+    public List<UserRecommendationDTO> nearby() {
+        return matchingService.getNearbyUsers(currentUserEmail, 50, 20);
+    }
+
+    private static <T> List<T> collect(Iterable<?> ids, Function<Long, T> lookup) {
+        List<T> result = new ArrayList<>();
+        for (Object id : ids) {
+            T value = lookup.apply((Long) id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<T> flatten(Collection<?> ids, Function<Long, List<T>> lookup) {
+        List<T> result = new ArrayList<>();
+        for (Object id : ids) {
+            List<T> values = lookup.apply((Long) id);
+            if (values != null) {
+                result.addAll(values);
+            }
+        }
+        return result;
+    }
+}
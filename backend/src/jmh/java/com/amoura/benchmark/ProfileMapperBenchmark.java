@@ -0,0 +1,64 @@
+package com.amoura.benchmark;
+
+import com.amoura.module.profile.domain.Location;
+import com.amoura.module.profile.domain.Photo;
+import com.amoura.module.profile.domain.Profile;
+import com.amoura.module.profile.domain.UserInterest;
+import com.amoura.module.profile.domain.UserPet;
+import com.amoura.module.profile.dto.ProfileDTO;
+import com.amoura.module.profile.mapper.ProfileMapper;
+import com.amoura.module.user.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo {@link ProfileMapper#toDTO} với một hồ sơ đầy đủ (ảnh, sở thích, thú cưng).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileMapperBenchmark {
+
+    private ProfileMapper profileMapper;
+    private User user;
+    private Profile profile;
+    private Location location;
+    private List<Photo> photos;
+    private List<UserInterest> interests;
+    private List<UserPet> pets;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        profileMapper = new ProfileMapper();
+        ReflectionTestUtils.setField(profileMapper, "baseUrl", "http://localhost:8080/api/files");
+
+        user = SyntheticData.user(1L);
+        profile = SyntheticData.profile(user, random);
+        location = SyntheticData.location(user, random);
+        photos = SyntheticData.photos(user, 6);
+        interests = SyntheticData.interests(user, 8);
+        pets = SyntheticData.pets(user, 2);
+    }
+
+    @Benchmark
+    public ProfileDTO toDTO() {
+        return profileMapper.toDTO(user, profile, location, photos, interests, List.of(), pets);
+    }
+}
@@ -0,0 +1,60 @@
+package com.amoura.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Stub tối giản cho repository/service trong benchmark: trả về dữ liệu dựng sẵn theo tên method,
+ * không qua Mockito để số liệu cấp phát chỉ phản ánh code đang đo.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    break;
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == Optional.class) {
+                return Optional.empty();
+            }
+            if (returnType == List.class || returnType == Iterable.class) {
+                return Collections.emptyList();
+            }
+            if (returnType == Set.class) {
+                return Collections.emptySet();
+            }
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType.isPrimitive() && returnType != void.class) {
+                return 0;
+            }
+            return null;
+        });
+    }
+
+    static <T> T empty(Class<T> type) {
+        return of(type, Map.of());
+    }
+}
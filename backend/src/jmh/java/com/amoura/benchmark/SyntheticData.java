@@ -0,0 +1,158 @@
+package com.amoura.benchmark;
+
+import com.amoura.module.chat.domain.ChatRoom;
+import com.amoura.module.chat.domain.Message;
+import com.amoura.module.chat.domain.MessageType;
+import com.amoura.module.matching.repository.CandidateProjection;
+import com.amoura.module.matching.repository.CardUserProjection;
+import com.amoura.module.profile.domain.Interest;
+import com.amoura.module.profile.domain.Location;
+import com.amoura.module.profile.domain.Pet;
+import com.amoura.module.profile.domain.Photo;
+import com.amoura.module.profile.domain.Profile;
+import com.amoura.module.profile.domain.UserInterest;
+import com.amoura.module.profile.domain.UserPet;
+import com.amoura.module.user.domain.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dữ liệu giả lập trong bộ nhớ cho benchmark, sinh theo seed cố định để các lần chạy so sánh được.
+ */
+final class SyntheticData {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 8, 1, 12, 0);
+
+    private SyntheticData() {
+    }
+
+    static User user(long id) {
+        return User.builder()
+                .id(id)
+                .username("user" + id)
+                .email("user" + id + "@amoura.test")
+                .firstName("First" + id)
+                .lastName("Last" + id)
+                .status("active")
+                .createdAt(NOW)
+                .build();
+    }
+
+    static Profile profile(User user, Random random) {
+        return Profile.builder()
+                .userId(user.getId())
+                .user(user)
+                .dateOfBirth(LocalDate.of(1990 + random.nextInt(15), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .height(150 + random.nextInt(40))
+                .sex(random.nextBoolean() ? "male" : "female")
+                .bio("Bio of user " + user.getId())
+                .build();
+    }
+
+    static Location location(User user, Random random) {
+        return Location.builder()
+                .userId(user.getId())
+                .user(user)
+                .latitudes(BigDecimal.valueOf(10.0 + random.nextDouble() * 2))
+                .longitudes(BigDecimal.valueOf(106.0 + random.nextDouble() * 2))
+                .country("Vietnam")
+                .city("Ho Chi Minh")
+                .build();
+    }
+
+    static List<Photo> photos(User user, int count) {
+        List<Photo> photos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            photos.add(Photo.builder()
+                    .id(user.getId() * 10 + i)
+                    .user(user)
+                    .path("users/" + user.getId() + "/photo-" + i + ".jpg")
+                    .type(i == 0 ? "avatar" : "highlight")
+                    .createdAt(NOW)
+                    .build());
+        }
+        return photos;
+    }
+
+    static List<UserInterest> interests(User user, int count) {
+        List<UserInterest> interests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Interest interest = new Interest();
+            interest.setId((long) i + 1);
+            interest.setName("Interest " + (i + 1));
+            UserInterest userInterest = new UserInterest();
+            userInterest.setId(new UserInterest.UserInterestId(user.getId(), interest.getId()));
+            userInterest.setUser(user);
+            userInterest.setInterest(interest);
+            interests.add(userInterest);
+        }
+        return interests;
+    }
+
+    static List<UserPet> pets(User user, int count) {
+        List<UserPet> pets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Pet pet = new Pet();
+            pet.setId((long) i + 1);
+            pet.setName("Pet " + (i + 1));
+            UserPet userPet = new UserPet();
+            userPet.setId(new UserPet.UserPetId(user.getId(), pet.getId()));
+            userPet.setUser(user);
+            userPet.setPet(pet);
+            pets.add(userPet);
+        }
+        return pets;
+    }
+
+    static CandidateProjection candidate(Profile profile, Location location) {
+        return new CandidateProjection() {
+            public Long getUserId() { return profile.getUserId(); }
+            public String getStatus() { return "active"; }
+            public String getSex() { return profile.getSex(); }
+            public Long getOrientationId() { return null; }
+            public LocalDate getDateOfBirth() { return profile.getDateOfBirth(); }
+            public BigDecimal getLatitude() { return location.getLatitudes(); }
+            public BigDecimal getLongitude() { return location.getLongitudes(); }
+        };
+    }
+
+    static CardUserProjection cardUser(User user) {
+        return new CardUserProjection() {
+            public Long getUserId() { return user.getId(); }
+            public String getUsername() { return user.getActualUsername(); }
+            public String getFirstName() { return user.getFirstName(); }
+            public String getLastName() { return user.getLastName(); }
+        };
+    }
+
+    static ChatRoom chatRoom(long id, User user1, User user2) {
+        return ChatRoom.builder()
+                .id(id)
+                .user1(user1)
+                .user2(user2)
+                .isActive(true)
+                .createdAt(NOW)
+                .updatedAt(NOW)
+                .build();
+    }
+
+    static Message message(long id, ChatRoom chatRoom, User sender, boolean withImage) {
+        return Message.builder()
+                .id(id)
+                .chatRoom(chatRoom)
+                .sender(sender)
+                .content("Message " + id + " from " + sender.getFirstName())
+                .messageType(withImage ? MessageType.IMAGE : MessageType.TEXT)
+                .isRead(false)
+                .createdAt(NOW)
+                .updatedAt(NOW)
+                .imageUrl(withImage ? "chat/images/" + id + ".jpg" : null)
+                .recalled(false)
+                .build();
+    }
+}
@@ -1,11 +1,29 @@
 package com.amoura.common.config;
 
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class RestTemplateConfig {
 
@@ -15,12 +33,103 @@ public class RestTemplateConfig {
     @Value("${ai.service.read-timeout:30000}")
     private int readTimeout;
 
+    // Tổng thời hạn của từng lời gọi (chờ pool, kết nối, gửi và đọc hết phản hồi); quá hạn thì request bị huỷ
+    @Value("${ai.service.deadline-ms:800}")
+    private int deadlineMs;
+
+    @Value("${ai.service.edit-deadline-ms:5000}")
+    private int editDeadlineMs;
+
+    @Value("${ai.service.pool.max-total:50}")
+    private int maxTotalConnections;
+
+    @Value("${ai.service.pool.max-per-route:20}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${ai.service.max-concurrent-calls:16}")
+    private int maxConcurrentCalls;
+
+    // Huỷ request AI khi hết tổng thời hạn
+    private final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-service-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void stopDeadlineTimer() {
+        deadlineTimer.shutdownNow();
+    }
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager aiServiceConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotalConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        // Kết nối dùng chung cho mọi lời gọi, nên giới hạn theo thời hạn ngắn nhất
+                        .setConnectTimeout(Timeout.ofMilliseconds(Math.min(connectionTimeout, Math.min(deadlineMs, editDeadlineMs))))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+    }
+
+    /**
+     * RestTemplate cho lời gọi gợi ý ứng viên, hết hạn sau {@code ai.service.deadline-ms}.
+     */
+    @Bean
+    @Primary
+    public RestTemplate restTemplate(PoolingHttpClientConnectionManager aiServiceConnectionManager) {
+        return aiServiceRestTemplate(aiServiceConnectionManager, deadlineMs);
+    }
+
+    /**
+     * RestTemplate cho lời gọi sửa tin nhắn bằng AI (chạy trên thread của Tomcat),
+     * hết hạn sau {@code ai.service.edit-deadline-ms}.
+     */
+    @Bean
+    public RestTemplate aiEditRestTemplate(PoolingHttpClientConnectionManager aiServiceConnectionManager) {
+        return aiServiceRestTemplate(aiServiceConnectionManager, editDeadlineMs);
+    }
+
+    private RestTemplate aiServiceRestTemplate(PoolingHttpClientConnectionManager connectionManager, int deadline) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Không chờ lâu khi pool đã cạn, để lời gọi rơi về fallback
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(Math.min(connectionTimeout, deadline)))
+                        // Thời gian chờ giữa hai gói tin (ghi đè socket timeout của pool), không phải tổng thời hạn
+                        .setResponseTimeout(Timeout.ofMilliseconds(Math.min(readTimeout, deadline)))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                // Phản hồi nhỏ giọt không chạm responseTimeout: huỷ request (đóng kết nối) khi hết tổng thời hạn.
+                // Request đã xong thì kết nối đã trả về pool, huỷ muộn không ảnh hưởng gì
+                if (request instanceof HttpUriRequestBase cancellable) {
+                    deadlineTimer.schedule(cancellable::cancel, deadline, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Thread pool riêng cho các lời gọi AI service, tách khỏi thread pool của Tomcat.
+     * Hàng đợi có giới hạn; khi đầy thì từ chối ngay để request đi theo luồng fallback.
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(connectionTimeout);
-        factory.setReadTimeout(readTimeout);
-        
-        return new RestTemplate(factory);
+    public ThreadPoolTaskExecutor aiServiceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentCalls);
+        executor.setMaxPoolSize(maxConcurrentCalls);
+        executor.setQueueCapacity(maxConcurrentCalls * 4);
+        executor.setThreadNamePrefix("ai-service-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
     }
 }
@@ -0,0 +1,196 @@
+package com.amoura.common.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broker trong tiến trình cho các destination "/topic/...", thay cho SimpleBroker khi
+ * {@code app.websocket.broker.mode=sharded}.
+ * <ul>
+ *   <li>Subscription được đánh chỉ mục theo destination chính xác (không hỗ trợ wildcard), tra cứu O(1)</li>
+ *   <li>Mỗi destination luôn được gửi trên cùng một shard đơn luồng, nên tin nhắn của một phòng giữ đúng thứ tự</li>
+ *   <li>Số tin nhắn đang chờ của từng shard được công bố qua gauge {@code amoura.websocket.broker.shard.queue_depth}</li>
+ * </ul>
+ * CONNECT/heartbeat và các prefix còn lại (/queue, /user, ...) vẫn do SimpleBroker xử lý.
+ */
+@Component
+@ConditionalOnProperty(name = "app.websocket.broker.mode", havingValue = "sharded")
+public class ShardedBrokerMessageHandler extends AbstractBrokerMessageHandler {
+
+    static final String TOPIC_PREFIX = "/topic/";
+
+    private final ThreadPoolExecutor[] shards;
+
+    // destination -> sessionId -> các subscriptionId
+    private final Map<String, Map<String, Set<String>>> subscriptionsByDestination = new ConcurrentHashMap<>();
+    // sessionId -> subscriptionId -> destination, dùng cho UNSUBSCRIBE/DISCONNECT
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
+    // Kênh gửi theo từng session, giữ thứ tự khi đi qua thread pool của clientOutboundChannel
+    private final Map<String, MessageChannel> sessionChannels = new ConcurrentHashMap<>();
+
+    public ShardedBrokerMessageHandler(@Qualifier("clientInboundChannel") SubscribableChannel clientInboundChannel,
+                                       @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                                       @Qualifier("brokerChannel") SubscribableChannel brokerChannel,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.websocket.broker.shards:8}") int shardCount) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, List.of(TOPIC_PREFIX));
+        setPreservePublishOrder(true);
+
+        this.shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String threadName = "stomp-shard-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            ThreadPoolExecutor shard = shards[i];
+            Gauge.builder("amoura.websocket.broker.shard.queue_depth", shard, executor -> executor.getQueue().size())
+                    .description("Messages waiting to be dispatched by a broker shard")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected void startInternal() {
+        publishBrokerAvailableEvent();
+    }
+
+    @Override
+    protected void stopInternal() {
+        publishBrokerUnavailableEvent();
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    public int queueDepth(int shard) {
+        return shards[shard].getQueue().size();
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+
+        // UNSUBSCRIBE/DISCONNECT không mang destination, tra theo session
+        if (SimpMessageType.DISCONNECT.equals(messageType)) {
+            removeSession(sessionId);
+            return;
+        }
+        if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+            removeSubscription(sessionId, subscriptionId);
+            return;
+        }
+        if (destination == null || !checkDestinationPrefix(destination)) {
+            return;
+        }
+
+        if (SimpMessageType.MESSAGE.equals(messageType)) {
+            shards[shardFor(destination)].execute(() -> dispatch(destination, message));
+        } else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+            addSubscription(sessionId, subscriptionId, destination);
+        }
+    }
+
+    int shardFor(String destination) {
+        return Math.floorMod(destination.hashCode(), shards.length);
+    }
+
+    private void dispatch(String destination, Message<?> message) {
+        Map<String, Set<String>> subscribers = subscriptionsByDestination.get(destination);
+        if (subscribers == null) {
+            return;
+        }
+        subscribers.forEach((sessionId, subscriptionIds) -> {
+            for (String subscriptionId : subscriptionIds) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setSessionId(sessionId);
+                accessor.setSubscriptionId(subscriptionId);
+                accessor.copyHeadersIfAbsent(message.getHeaders());
+                accessor.setLeaveMutable(true);
+                Message<?> reply = MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+                try {
+                    sessionChannels.computeIfAbsent(sessionId, this::getClientOutboundChannelForSession).send(reply);
+                } catch (Exception e) {
+                    logger.error("Failed to send " + destination + " to session " + sessionId, e);
+                }
+            }
+        });
+    }
+
+    // Chỉ luồng shard của destination mới sửa subscriptionsByDestination[destination],
+    // nên subscribe/unsubscribe giữ đúng thứ tự với tin nhắn đang chờ của phòng đó
+    private void addSubscription(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        subscriptionsBySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        shards[shardFor(destination)].execute(() ->
+                subscriptionsByDestination.computeIfAbsent(destination, d -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+                        .add(subscriptionId));
+    }
+
+    private void removeSubscription(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, String> sessionSubscriptions = subscriptionsBySession.get(sessionId);
+        String destination = sessionSubscriptions != null ? sessionSubscriptions.remove(subscriptionId) : null;
+        if (destination != null) {
+            shards[shardFor(destination)].execute(() -> removeFromDestination(destination, sessionId, subscriptionId));
+        }
+    }
+
+    private void removeSession(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Map<String, String> sessionSubscriptions = subscriptionsBySession.remove(sessionId);
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.forEach((subscriptionId, destination) -> shards[shardFor(destination)].execute(() ->
+                    removeFromDestination(destination, sessionId, subscriptionId)));
+        }
+        sessionChannels.remove(sessionId);
+    }
+
+    private void removeFromDestination(String destination, String sessionId, String subscriptionId) {
+        Map<String, Set<String>> sessions = subscriptionsByDestination.get(destination);
+        if (sessions == null) {
+            return;
+        }
+        Set<String> subscriptionIds = sessions.get(sessionId);
+        if (subscriptionIds != null) {
+            subscriptionIds.remove(subscriptionId);
+            if (subscriptionIds.isEmpty()) {
+                sessions.remove(sessionId);
+            }
+        }
+        if (sessions.isEmpty()) {
+            subscriptionsByDestination.remove(destination);
+        }
+    }
+}
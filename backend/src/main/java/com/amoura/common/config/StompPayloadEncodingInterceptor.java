@@ -0,0 +1,191 @@
+package com.amoura.common.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mã hoá payload STOMP dạng nhị phân (CBOR) cho client yêu cầu khi SUBSCRIBE.
+ * <ul>
+ *   <li>Client gửi header {@code content-type: application/cbor} trong frame SUBSCRIBE; subscription khác vẫn nhận JSON</li>
+ *   <li>Chỉ áp dụng cho phiên WebSocket thuần (đánh dấu bởi {@link BinaryFramesHandshakeInterceptor});
+ *       SockJS chỉ truyền được text nên phiên SockJS luôn nhận JSON</li>
+ *   <li>Kênh outbound: frame MESSAGE JSON của subscription CBOR được chuyển sang CBOR, bỏ các trường null.
+ *       Frame mang {@code content-type: application/octet-stream} để StompSubProtocolHandler gửi bằng frame
+ *       nhị phân, kèm header {@code payload-encoding: cbor} cho client giải mã</li>
+ *   <li>Broker dùng chung một mảng payload cho mọi subscriber của một lần phát, nên bản CBOR được cache theo
+ *       chính mảng đó: mỗi lần phát chỉ chuyển mã một lần</li>
+ * </ul>
+ * Được đăng ký trên cả kênh inbound (ghi nhận subscription) và outbound (chuyển mã).
+ */
+@Component
+@Slf4j
+public class StompPayloadEncodingInterceptor implements ChannelInterceptor {
+
+    public static final MimeType APPLICATION_CBOR = MimeType.valueOf("application/cbor");
+
+    public static final String PAYLOAD_ENCODING_HEADER = "payload-encoding";
+    public static final String CBOR_ENCODING = "cbor";
+
+    // Thuộc tính phiên: kết nối là WebSocket thuần, nhận được frame nhị phân
+    static final String BINARY_FRAMES_ATTRIBUTE = "amoura.binaryFrames";
+
+    private static final String CONTENT_TYPE_HEADER = "content-type";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+
+    // sessionId -> các subscriptionId nhận CBOR
+    private final Map<String, Set<String>> cborSubscriptions = new ConcurrentHashMap<>();
+    // payload JSON (so sánh theo identity, khoá yếu) -> payload CBOR
+    private final Map<byte[], byte[]> encodedPayloads = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (messageType == null) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        switch (messageType) {
+            case MESSAGE:
+                return encode(message, sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+            case SUBSCRIBE:
+                String contentType = NativeMessageHeaderAccessor.getFirstNativeHeader(CONTENT_TYPE_HEADER, headers);
+                if (sessionId != null && contentType != null && supportsBinaryFrames(headers)
+                        && APPLICATION_CBOR.isCompatibleWith(MimeType.valueOf(contentType))) {
+                    cborSubscriptions.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+                            .add(SimpMessageHeaderAccessor.getSubscriptionId(headers));
+                }
+                return message;
+            case UNSUBSCRIBE:
+                Set<String> subscriptions = sessionId != null ? cborSubscriptions.get(sessionId) : null;
+                if (subscriptions != null) {
+                    subscriptions.remove(SimpMessageHeaderAccessor.getSubscriptionId(headers));
+                }
+                return message;
+            case DISCONNECT:
+                if (sessionId != null) {
+                    cborSubscriptions.remove(sessionId);
+                }
+                return message;
+            default:
+                return message;
+        }
+    }
+
+    private boolean supportsBinaryFrames(MessageHeaders headers) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        return attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE));
+    }
+
+    int trackedSessions() {
+        return cborSubscriptions.size();
+    }
+
+    private Message<?> encode(Message<?> message, String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        Set<String> subscriptions = cborSubscriptions.get(sessionId);
+        if (subscriptions == null || !subscriptions.contains(subscriptionId)) {
+            return message;
+        }
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof MimeType type ? type
+                : contentType instanceof String value ? MimeType.valueOf(value) : null;
+        if (mimeType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            return message;
+        }
+
+        byte[] cbor;
+        try {
+            cbor = encodedPayloads.get(json);
+            if (cbor == null) {
+                cbor = toCbor(json);
+                encodedPayloads.put(json, cbor);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to encode payload as CBOR for session {}: {}", sessionId, e.getMessage());
+            return message;
+        }
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        if (!(accessor instanceof NativeMessageHeaderAccessor nativeAccessor)) {
+            return message;
+        }
+        // octet-stream: StompSubProtocolHandler gửi frame nhị phân thay vì TextMessage
+        nativeAccessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        if (nativeAccessor.getFirstNativeHeader(CONTENT_TYPE_HEADER) != null) {
+            nativeAccessor.setNativeHeader(CONTENT_TYPE_HEADER, MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE);
+        }
+        nativeAccessor.setNativeHeader(PAYLOAD_ENCODING_HEADER, CBOR_ENCODING);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    // Chép từng token JSON sang CBOR (không dựng cây), bỏ các trường có giá trị null
+    byte[] toCbor(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    generator.writeFieldName(name);
+                }
+                generator.copyCurrentEvent(parser);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Đăng ký trên các endpoint WebSocket thuần (không SockJS): đánh dấu phiên nhận được frame nhị phân.
+     */
+    public static class BinaryFramesHandshakeInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            attributes.put(BINARY_FRAMES_ATTRIBUTE, Boolean.TRUE);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
+    }
+}
@@ -21,8 +21,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${app.websocket.allowed-origins}")
     private String[] allowedOrigins;
 
+    // simple | sharded (sharded: "/topic" do ShardedBrokerMessageHandler xử lý)
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
     private final ChatSubscriptionInterceptor chatSubscriptionInterceptor;
+    private final StompPayloadEncodingInterceptor stompPayloadEncodingInterceptor;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -32,8 +37,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .withSockJS();
         
         // Alternative endpoint without SockJS (for native WebSocket)
+        // Chỉ phiên WebSocket thuần mới nhận được payload CBOR (frame nhị phân)
         registry.addEndpoint(websocketEndpoint)
-                .setAllowedOriginPatterns("*");
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new StompPayloadEncodingInterceptor.BinaryFramesHandshakeInterceptor());
         
         // Additional endpoint for websocket
         registry.addEndpoint("/websocket")
@@ -41,14 +48,22 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .withSockJS();
         
         registry.addEndpoint("/websocket")
-                .setAllowedOriginPatterns("*");
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new StompPayloadEncodingInterceptor.BinaryFramesHandshakeInterceptor());
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         // Enable simple broker for sending messages to clients
-        registry.enableSimpleBroker("/topic", "/queue", "/chat", "/notification");
+        if ("sharded".equalsIgnoreCase(brokerMode)) {
+            registry.enableSimpleBroker("/queue", "/chat", "/notification");
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue", "/chat", "/notification");
+        }
         
+        // Giữ thứ tự tin nhắn gửi tới từng phiên (tin nhắn trong phòng được phát theo số thứ tự)
+        registry.setPreservePublishOrder(true);
+
         // Set prefix for client-to-server messages
         registry.setApplicationDestinationPrefixes("/app");
         
@@ -58,6 +73,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(webSocketAuthInterceptor, chatSubscriptionInterceptor);
+        registration.interceptors(webSocketAuthInterceptor, chatSubscriptionInterceptor, stompPayloadEncodingInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Chuyển payload sang CBOR cho subscription yêu cầu (xem StompPayloadEncodingInterceptor)
+        registration.interceptors(stompPayloadEncodingInterceptor);
     }
 } 
\ No newline at end of file
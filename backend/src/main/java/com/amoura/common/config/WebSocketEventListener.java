@@ -25,8 +25,8 @@ public class WebSocketEventListener {
         if (user != null) {
             try {
                 Long userId = Long.parseLong(user.getName());
-                onlineUserService.userOnline(userId);
-                log.info("User {} is now ONLINE", userId);
+                onlineUserService.sessionConnected(userId, accessor.getSessionId());
+                log.debug("User {} opened session {}", userId, accessor.getSessionId());
             } catch (NumberFormatException ignored) {}
         }
     }
@@ -38,8 +38,8 @@ public class WebSocketEventListener {
         if (user != null) {
             try {
                 Long userId = Long.parseLong(user.getName());
-                onlineUserService.userOffline(userId);
-                log.info("User {} is now OFFLINE", userId);
+                onlineUserService.sessionDisconnected(userId, event.getSessionId());
+                log.debug("User {} closed session {}", userId, event.getSessionId());
             } catch (NumberFormatException ignored) {}
         }
     }
@@ -1,5 +1,6 @@
 package com.amoura.infrastructure.security;
 
+import com.amoura.module.matching.service.CandidateIndex;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final CandidateIndex candidateIndex;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -37,6 +39,7 @@ public class CustomUserDetailsService implements UserDetailsService {
                     user.setSuspensionUntil(null);
                     user.setSuspensionReason(null);
                     userRepository.save(user);
+                    candidateIndex.refresh(user.getId());
                     // Tiếp tục xử lý bình thường
                 } else {
                     // Vẫn trong thời gian suspension
@@ -56,6 +56,10 @@ public class SecurityConfig {
                         // Admin and Moderator
                         .requestMatchers("/moderation/**").hasAnyRole("ADMIN", "MODERATOR")
 
+                        // Actuator: health công khai, metrics chỉ cho admin
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                         // Cho phép get ảnh
                         .requestMatchers(HttpMethod.GET, "/profiles/photos/*/avatar").permitAll()
                         .requestMatchers(HttpMethod.GET, "/profiles/photos/*/cover").permitAll()
@@ -0,0 +1,259 @@
+package com.amoura.infrastructure.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Lưu file tải lên theo nội dung: tên file là SHA-256 của nội dung, file trùng nội dung chỉ lưu một lần.
+ * <ul>
+ *   <li>Dữ liệu được ghi thẳng từ stream vào FileChannel, digest được tính trong cùng lượt đọc</li>
+ *   <li>Số lượt tham chiếu được giữ trong bảng {@code stored_files}, mỗi bản ghi dùng file giữ một lượt;
+ *       file chỉ bị xoá khi không còn ai dùng</li>
+ *   <li>Metrics: {@code amoura.storage.upload.bytes}, {@code amoura.storage.upload.throughput} (bytes/s mỗi lần tải),
+ *       {@code amoura.storage.upload.dedup.ratio}</li>
+ * </ul>
+ * Đường dẫn trả về là đường dẫn tương đối trong thư mục upload, dạng {@code <namespace>/blobs/ab/<sha256><ext>}.
+ */
+@Component
+@Slf4j
+public class ContentAddressedFileStorage {
+
+    private static final long TRANSFER_CHUNK_BYTES = 1L << 20;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO stored_files (path, sha256, size_bytes, ref_count) VALUES (?, ?, ?, 1) " +
+            "ON CONFLICT (path) DO UPDATE SET ref_count = stored_files.ref_count + 1";
+    private static final String REGISTER_SQL =
+            "INSERT INTO stored_files (path, sha256, size_bytes, ref_count) VALUES (?, ?, ?, 0) " +
+            "ON CONFLICT (path) DO NOTHING";
+    private static final String ACQUIRE_EXISTING_SQL =
+            "UPDATE stored_files SET ref_count = ref_count + 1 WHERE path = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE stored_files SET ref_count = ref_count - 1 WHERE path = ? AND ref_count > 0";
+    private static final String DELETE_UNUSED_SQL =
+            "DELETE FROM stored_files WHERE path = ? AND ref_count = 0";
+    private static final String COUNT_SQL =
+            "SELECT COUNT(*) FROM stored_files WHERE path = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path root;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Counter uploads;
+    private final Counter dedupHits;
+    private final Counter uploadedBytes;
+    private final DistributionSummary throughput;
+
+    public ContentAddressedFileStorage(JdbcTemplate jdbcTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${file.storage.local.upload-dir}") String uploadDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.root = Paths.get(uploadDir);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        this.uploads = Counter.builder("amoura.storage.upload.files")
+                .description("Files received by the upload storage")
+                .register(meterRegistry);
+        this.dedupHits = Counter.builder("amoura.storage.upload.dedup")
+                .description("Uploads whose content was already stored")
+                .register(meterRegistry);
+        this.uploadedBytes = Counter.builder("amoura.storage.upload.bytes")
+                .baseUnit("bytes")
+                .description("Bytes received by the upload storage")
+                .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("amoura.storage.upload.throughput")
+                .baseUnit("bytes/s")
+                .description("Transfer rate of a single upload")
+                .register(meterRegistry);
+        Gauge.builder("amoura.storage.upload.dedup.ratio", this, ContentAddressedFileStorage::dedupRatio)
+                .description("Share of uploads served by an existing file")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lưu nội dung của stream, trả về đường dẫn tương đối. Mỗi lần gọi tăng một lượt tham chiếu,
+     * nơi gọi phải {@link #release(String)} khi không dùng file nữa.
+     */
+    public String store(InputStream content, String namespace, String extension) throws IOException {
+        return store(content, namespace, extension, ACQUIRE_SQL);
+    }
+
+    /**
+     * Lưu nội dung của stream nhưng không giữ lượt tham chiếu nào: dùng khi file được tải lên trước,
+     * bản ghi dùng file được tạo sau (vd. tin nhắn ảnh). Mỗi bản ghi dùng file phải {@link #acquire(String)}.
+     */
+    public String storeUnreferenced(InputStream content, String namespace, String extension) throws IOException {
+        return store(content, namespace, extension, REGISTER_SQL);
+    }
+
+    private String store(InputStream content, String namespace, String extension, String referenceSql) throws IOException {
+        Path tmpDir = root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        Path tmpFile = tmpDir.resolve("upload-" + UUID.randomUUID() + ".part");
+
+        MessageDigest digest = newDigest();
+        long startedAt = System.nanoTime();
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(content, digest));
+             FileChannel target = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long transferred;
+            while ((transferred = target.transferFrom(source, size, TRANSFER_CHUNK_BYTES)) > 0) {
+                size += transferred;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+        recordUpload(size, System.nanoTime() - startedAt);
+
+        String hash = HexFormat.of().formatHex(digest.digest());
+        String relativePath = namespace + "/blobs/" + hash.substring(0, 2) + "/" + hash + normalizeExtension(extension);
+        Path target = root.resolve(relativePath);
+
+        synchronized (lockFor(relativePath)) {
+            if (Files.exists(target)) {
+                Files.delete(tmpFile);
+                dedupHits.increment();
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(tmpFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            jdbcTemplate.update(referenceSql, relativePath, hash, size);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Transaction rollback thì lượt tham chiếu cũng mất; dọn file nếu không còn ai dùng
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        deleteIfUnreferenced(relativePath);
+                    }
+                }
+            });
+        }
+        return relativePath;
+    }
+
+    public boolean isManaged(String relativePath) {
+        return relativePath != null && !relativePath.startsWith("http") && relativePath.contains("/blobs/");
+    }
+
+    /**
+     * Thêm một lượt tham chiếu cho file đã lưu. Trả về false nếu file không còn (đã bị xoá khi không ai dùng);
+     * đường dẫn không do storage quản lý luôn trả về true.
+     */
+    public boolean acquire(String relativePath) {
+        if (!isManaged(relativePath)) {
+            return true;
+        }
+        synchronized (lockFor(relativePath)) {
+            return jdbcTemplate.update(ACQUIRE_EXISTING_SQL, relativePath) > 0;
+        }
+    }
+
+    /**
+     * Bỏ một lượt tham chiếu; file bị xoá (sau khi commit nếu đang trong transaction) khi không còn ai dùng.
+     */
+    public void release(String relativePath) {
+        if (!isManaged(relativePath)) {
+            return;
+        }
+        jdbcTemplate.update(RELEASE_SQL, relativePath);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteIfUnused(relativePath);
+                }
+            });
+        } else {
+            deleteIfUnused(relativePath);
+        }
+    }
+
+    double dedupRatio() {
+        double total = uploads.count();
+        return total == 0 ? 0 : dedupHits.count() / total;
+    }
+
+    private void deleteIfUnused(String relativePath) {
+        synchronized (lockFor(relativePath)) {
+            try {
+                if (jdbcTemplate.update(DELETE_UNUSED_SQL, relativePath) > 0) {
+                    Files.deleteIfExists(root.resolve(relativePath));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to delete unused file {}: {}", relativePath, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteIfUnreferenced(String relativePath) {
+        synchronized (lockFor(relativePath)) {
+            try {
+                Integer rows = jdbcTemplate.queryForObject(COUNT_SQL, Integer.class, relativePath);
+                if (rows != null && rows == 0) {
+                    Files.deleteIfExists(root.resolve(relativePath));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to clean up file {} after rollback: {}", relativePath, e.getMessage());
+            }
+        }
+    }
+
+    private void recordUpload(long size, long elapsedNanos) {
+        uploads.increment();
+        uploadedBytes.increment(size);
+        if (elapsedNanos > 0) {
+            throughput.record(size * 1_000_000_000d / elapsedNanos);
+        }
+    }
+
+    private Object lockFor(String relativePath) {
+        return locks[Math.floorMod(relativePath.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String normalizeExtension(String extension) {
+        if (extension == null || extension.isEmpty()) {
+            return ".jpg";
+        }
+        // Chỉ giữ phần mở rộng đơn giản để tên file không chứa ký tự đường dẫn
+        String lower = extension.toLowerCase();
+        return lower.matches("\\.[a-z0-9]{1,10}") ? lower : ".jpg";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
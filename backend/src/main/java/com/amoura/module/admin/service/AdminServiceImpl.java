@@ -7,6 +7,7 @@ import com.amoura.module.admin.dto.StatusUpdateResponse;
 import com.amoura.module.admin.dto.UserManagementDTO;
 import com.amoura.module.admin.dto.UserStatusUpdateRequest;
 import com.amoura.module.admin.repository.AdminRepository;
+import com.amoura.module.matching.service.CandidateIndex;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.repository.UserRepository;
 import com.amoura.common.exception.ApiException;
@@ -30,6 +31,7 @@ public class AdminServiceImpl implements AdminService {
 
     private final AdminRepository adminRepository;
     private final UserRepository userRepository;
+    private final CandidateIndex candidateIndex;
 
     @Override
     @Transactional(readOnly = true)
@@ -404,6 +406,7 @@ public class AdminServiceImpl implements AdminService {
         }
         
         userRepository.save(user);
+        candidateIndex.refresh(userId);
         
         log.info("User {} status updated from {} to {} for reason: {}", 
                 userId, oldStatus, request.getStatus(), request.getReason());
@@ -1,14 +1,18 @@
 package com.amoura.module.chat.api;
 
 import com.amoura.infrastructure.security.JwtTokenProvider.CustomUserDetails;
+import com.amoura.infrastructure.storage.ContentAddressedFileStorage;
 import com.amoura.module.chat.dto.*;
 import com.amoura.module.chat.service.ChatService;
+import com.amoura.module.chat.service.TypingStateEngine;
+import com.amoura.module.chat.service.UnreadCounterStore;
 import com.amoura.module.matching.service.AIServiceClient;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -20,7 +24,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Value;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.IOException;
 
@@ -48,6 +51,9 @@ public class ChatController {
     private final MessageRepository messageRepository;
     private final UserMessageVisibilityRepository userMessageVisibilityRepository;
     private final AIServiceClient aiServiceClient;
+    private final TypingStateEngine typingStateEngine;
+    private final ContentAddressedFileStorage fileStorage;
+    private final UnreadCounterStore unreadCounterStore;
     private static final Logger log = LoggerFactory.getLogger(ChatController.class);
 
     @Value("${file.storage.local.upload-dir}")
@@ -132,6 +138,34 @@ public class ChatController {
         return ResponseEntity.ok(messages);
     }
 
+    @GetMapping("/sync")
+    @Operation(summary = "Get all chat changes (rooms, messages, recalls, read receipts) since the last sync")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<ChatSyncResponse> syncChanges(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        return ResponseEntity.ok(chatService.syncChanges(getUserId(userDetails), since));
+    }
+
+    @GetMapping("/messages/search")
+    @Operation(summary = "Search messages across the user's chat rooms (or one room) with cursor-based pagination")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CursorPaginationResponse<MessageDTO>> searchMessages(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Long chatRoomId,
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") Integer limit) {
+
+        CursorPaginationRequest request = CursorPaginationRequest.builder()
+                .cursor(cursor)
+                .limit(limit)
+                .direction("NEXT")
+                .build();
+
+        return ResponseEntity.ok(chatService.searchMessages(getUserId(userDetails), query, chatRoomId, request));
+    }
+
     @PutMapping("/rooms/{chatRoomId}/messages/read")
     @Operation(summary = "Mark messages as read")
     @SecurityRequirement(name = "bearerAuth")
@@ -154,6 +188,13 @@ public class ChatController {
         return ResponseEntity.ok(count);
     }
 
+    @GetMapping("/messages/unread-count")
+    @Operation(summary = "Get total unread message count across all chat rooms")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<Long> getTotalUnreadMessageCount(@AuthenticationPrincipal UserDetails userDetails) {
+        return ResponseEntity.ok(chatService.getTotalUnreadMessageCount(getUserId(userDetails)));
+    }
+
     @PostMapping("/messages/{messageId}/delete-for-me")
     @Operation(summary = "Delete message for current user only")
     @SecurityRequirement(name = "bearerAuth")
@@ -162,6 +203,9 @@ public class ChatController {
         if (userMessageVisibilityRepository.findByUserIdAndMessageId(userId, messageId).isEmpty()) {
             UserMessageVisibility vis = new UserMessageVisibility(userId, messageId, LocalDateTime.now());
             userMessageVisibilityRepository.save(vis);
+            // Tin nhắn bị ẩn có thể đang được tính là chưa đọc
+            messageRepository.findById(messageId)
+                    .ifPresent(message -> unreadCounterStore.refreshRoom(message.getChatRoom().getId(), userId));
         }
         return ResponseEntity.ok().build();
     }
@@ -219,9 +263,9 @@ public class ChatController {
 
     @MessageMapping("/chat.typing")
     public void sendTypingIndicator(@Payload TypingRequest request, SimpMessageHeaderAccessor headerAccessor) {
-        // Handle typing indicator via WebSocket
+        // Handle typing indicator via WebSocket, không đi qua ChatService để không mở transaction
         Long senderId = getUserIdFromHeader(headerAccessor);
-        chatService.sendTypingIndicator(request.getChatRoomId(), senderId, request.isTyping());
+        typingStateEngine.onTyping(request.getChatRoomId(), senderId, request.isTyping());
     }
 
     @MessageMapping("/chat.recallMessage")
@@ -256,14 +300,10 @@ public class ChatController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to this chat room");
         }
         try {
-            Path roomDir = Paths.get(uploadDir, "chat", chatRoomId.toString());
-            if (!Files.exists(roomDir)) {
-                Files.createDirectories(roomDir);
-            }
-            String filename = System.currentTimeMillis() + getFileExtension(file.getOriginalFilename());
-            Path filePath = roomDir.resolve(filename);
-            Files.copy(file.getInputStream(), filePath);
-            String relativePath = "chat/" + chatRoomId + "/" + filename;
+            // Lưu theo nội dung: ảnh gửi lại / chuyển tiếp dùng chung một file.
+            // Lượt tham chiếu do từng tin nhắn dùng ảnh giữ (xem ChatServiceImpl.sendMessage)
+            String relativePath = fileStorage.storeUnreferenced(file.getInputStream(), "chat",
+                    getFileExtension(file.getOriginalFilename()));
             String imageUrl = baseUrl + "/" + relativePath;
             return ResponseEntity.ok(imageUrl);
         } catch (IOException e) {
@@ -287,22 +327,28 @@ public class ChatController {
         } else if (imageUrl.startsWith("/")) {
             relativePath = imageUrl.substring(1);
         }
-        Path filePath = Paths.get(uploadDir, relativePath);
         try {
-            // Tìm message chứa relativePath này
-            var messageOpt = messageRepository.findByImageUrl(relativePath, userId);
-            if (messageOpt.isEmpty()) {
+            // Tìm message chứa relativePath này; file có thể dùng chung nên ưu tiên message do user tải lên
+            List<Message> messages = messageRepository.findByImageUrl(relativePath, userId);
+            if (messages.isEmpty()) {
                 return ResponseEntity.status(404).body("Message with this image not found");
             }
-            var message = messageOpt.get();
-            if (message.getImageUploaderId() == null || !message.getImageUploaderId().equals(userId)) {
+            var message = messages.stream()
+                    .filter(m -> userId.equals(m.getImageUploaderId()))
+                    .findFirst()
+                    .orElse(null);
+            if (message == null) {
                 return ResponseEntity.status(403).body("You are not allowed to delete this image");
             }
-            // Xóa file vật lý
-            Files.deleteIfExists(filePath);
             message.setImageUrl(null);
             message.setImageUploaderId(null);
             messageRepository.save(message);
+            // Bỏ lượt tham chiếu của tin nhắn này; file dùng chung chỉ bị xoá khi không còn tin nhắn nào tham chiếu
+            if (fileStorage.isManaged(relativePath)) {
+                fileStorage.release(relativePath);
+            } else {
+                Files.deleteIfExists(Paths.get(uploadDir, relativePath));
+            }
             return ResponseEntity.ok("Image deleted");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Failed to delete image");
@@ -1,11 +1,12 @@
 package com.amoura.module.chat.config;
 
-import com.amoura.module.chat.repository.ChatRoomRepository;
+import com.amoura.module.chat.service.ChatRoomMembershipCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.simp.stomp.StompCommand;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Component;
@@ -16,21 +17,28 @@ import java.security.Principal;
 @RequiredArgsConstructor
 public class ChatSubscriptionInterceptor implements ChannelInterceptor {
 
-    private final ChatRoomRepository chatRoomRepository;
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+
+    private final ChatRoomMembershipCache chatRoomMembershipCache;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
-        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
-
-        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
-            String destination = accessor.getDestination(); // ví dụ: /topic/chat/123/user-status
-            Principal user = accessor.getUser();
-            if (destination != null && destination.startsWith("/topic/chat/")) {
-                Long chatRoomId = extractChatRoomId(destination);
-                Long userId = Long.parseLong(user.getName());
-                if (!chatRoomRepository.isUserInChatRoom(chatRoomId, userId)) {
-                    throw new AccessDeniedException("You are not allowed to subscribe to this chat room");
-                }
+        // Đọc thẳng header, không wrap: các frame không phải SUBSCRIBE đi qua mà không cấp phát gì
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.SUBSCRIBE) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers); // ví dụ: /topic/chat/123/user-status
+        if (destination != null && destination.startsWith(CHAT_TOPIC_PREFIX)) {
+            Principal user = SimpMessageHeaderAccessor.getUser(headers);
+            if (user == null) {
+                throw new AccessDeniedException("You are not allowed to subscribe to this chat room");
+            }
+            Long chatRoomId = extractChatRoomId(destination);
+            Long userId = Long.parseLong(user.getName());
+            if (!chatRoomMembershipCache.isMember(chatRoomId, userId)) {
+                throw new AccessDeniedException("You are not allowed to subscribe to this chat room");
             }
         }
         return message;
@@ -38,7 +46,8 @@ public class ChatSubscriptionInterceptor implements ChannelInterceptor {
 
     private Long extractChatRoomId(String destination) {
         // Parse chatRoomId từ chuỗi, ví dụ: /topic/chat/123/user-status
-        String[] parts = destination.split("/");
-        return Long.parseLong(parts[3]);
+        int start = CHAT_TOPIC_PREFIX.length();
+        int end = destination.indexOf('/', start);
+        return Long.parseLong(end < 0 ? destination.substring(start) : destination.substring(start, end));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.amoura.module.chat.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Mốc đã đọc của một người dùng trong một phòng: tin nhắn của người kia có id <= lastReadMessageId là đã đọc.
+ */
+@Entity
+@Table(name = "chat_read_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(ChatReadWatermark.ChatReadWatermarkId.class)
+public class ChatReadWatermark implements Serializable {
+    @Id
+    private Long chatRoomId;
+    @Id
+    private Long userId;
+    private Long lastReadMessageId;
+    private LocalDateTime readAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChatReadWatermarkId implements Serializable {
+        private Long chatRoomId;
+        private Long userId;
+    }
+}
@@ -39,6 +39,7 @@ public class Message {
     @Column(name = "message_type", nullable = false)
     private MessageType messageType = MessageType.TEXT;
     
+    // Cột cũ, không còn được cập nhật; trạng thái đã đọc lấy từ ChatReadWatermark
     @Column(name = "is_read", nullable = false)
     private Boolean isRead = false;
     
@@ -64,6 +65,10 @@ public class Message {
     @Column(name = "recalled_at")
     private LocalDateTime recalledAt;
     
+    // Số thứ tự trong phòng, do MessageSequencer cấp khi ghi
+    @Column(name = "room_seq", updatable = false)
+    private Long roomSeq;
+    
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
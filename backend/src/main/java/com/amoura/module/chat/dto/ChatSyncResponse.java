@@ -0,0 +1,48 @@
+package com.amoura.module.chat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Các thay đổi trên mọi phòng chat của user kể từ một mốc thời gian.
+ * Client gửi lại {@code syncedAt} ở lần đồng bộ sau; {@code truncated = true} nghĩa là có quá nhiều tin nhắn,
+ * client nên tải lại từng phòng như bình thường.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncResponse {
+    private LocalDateTime syncedAt;
+    private Boolean truncated;
+    private List<ChatRoomDTO> rooms;
+    private List<MessageDTO> messages;
+    private List<RecalledMessage> recalledMessages;
+    private List<ReadReceipt> readReceipts;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecalledMessage {
+        private Long messageId;
+        private Long chatRoomId;
+        private LocalDateTime recalledAt;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReadReceipt {
+        private Long chatRoomId;
+        private Long userId;
+        private Long lastReadMessageId;
+        private LocalDateTime readAt;
+    }
+}
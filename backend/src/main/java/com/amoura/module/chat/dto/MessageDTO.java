@@ -15,6 +15,7 @@ import java.time.LocalDateTime;
 public class MessageDTO {
     private Long id;
     private Long chatRoomId;
+    private Long sequence;
     private Long senderId;
     private String senderName;
     private String senderAvatar;
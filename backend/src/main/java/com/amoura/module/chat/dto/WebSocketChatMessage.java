@@ -16,6 +16,7 @@ public class WebSocketChatMessage {
     private String type; // MESSAGE, TYPING, READ_RECEIPT, MESSAGE_RECALLED, etc.
     private Long chatRoomId;
     private Long messageId;
+    private Long sequence; // số thứ tự tin nhắn trong phòng (MESSAGE), dùng để phát hiện tin nhắn bị thiếu
     private Long senderId;
     private String senderName;
     private String senderAvatar;
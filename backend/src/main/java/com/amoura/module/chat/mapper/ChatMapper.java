@@ -1,10 +1,15 @@
 package com.amoura.module.chat.mapper;
 
+import com.amoura.module.chat.domain.ChatReadWatermark;
 import com.amoura.module.chat.domain.ChatRoom;
 import com.amoura.module.chat.domain.Message;
+import com.amoura.module.chat.domain.MessageType;
 import com.amoura.module.chat.dto.ChatRoomDTO;
 import com.amoura.module.chat.dto.MessageDTO;
+import com.amoura.module.chat.repository.ChatInboxProjection;
+import com.amoura.module.chat.repository.ChatReadWatermarkRepository;
 import com.amoura.module.chat.repository.MessageRepository;
+import com.amoura.module.chat.repository.MessageTimelineProjection;
 import com.amoura.module.profile.service.PhotoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,13 +23,17 @@ import java.util.stream.Collectors;
 public class ChatMapper {
     private final PhotoService photoService;
     private final MessageRepository messageRepository;
+    private final ChatReadWatermarkRepository chatReadWatermarkRepository;
     @Value("${file.storage.local.base-url}")
     private String baseUrl;
 
     @Autowired
-    public ChatMapper(PhotoService photoService, MessageRepository messageRepository) {
+    public ChatMapper(PhotoService photoService,
+                      MessageRepository messageRepository,
+                      ChatReadWatermarkRepository chatReadWatermarkRepository) {
         this.photoService = photoService;
         this.messageRepository = messageRepository;
+        this.chatReadWatermarkRepository = chatReadWatermarkRepository;
     }
     
     public ChatRoomDTO toChatRoomDTO(ChatRoom chatRoom) {
@@ -45,19 +54,18 @@ public class ChatMapper {
                     PageRequest.of(0, 1)
             );
             if (!visibleMessages.isEmpty()) {
-                lastMessage = toMessageDTO(visibleMessages.get(0));
+                lastMessage = toMessageDTO(visibleMessages.get(0),
+                        chatReadWatermarkRepository.findByChatRoomId(chatRoom.getId()));
             }
         }
         
         String user1Avatar = null;
         if (chatRoom.getUser1() != null) {
-            var avatar = photoService.getUserAvatarById(chatRoom.getUser1().getId());
-            user1Avatar = avatar != null ? avatar.getUrl() : null;
+            user1Avatar = photoService.getUserAvatarUrl(chatRoom.getUser1().getId());
         }
         String user2Avatar = null;
         if (chatRoom.getUser2() != null) {
-            var avatar = photoService.getUserAvatarById(chatRoom.getUser2().getId());
-            user2Avatar = avatar != null ? avatar.getUrl() : null;
+            user2Avatar = photoService.getUserAvatarUrl(chatRoom.getUser2().getId());
         }
         
         return ChatRoomDTO.builder()
@@ -75,6 +83,50 @@ public class ChatMapper {
                 .build();
     }
     
+    /**
+     * Dựng ChatRoomDTO từ một dòng hộp thư, không truy vấn thêm.
+     */
+    public ChatRoomDTO toChatRoomDTO(ChatInboxProjection row) {
+        MessageDTO lastMessage = null;
+        if (row.getLastMessageId() != null) {
+            boolean sentByUser1 = row.getLastMessageSenderId().equals(row.getUser1Id());
+            lastMessage = MessageDTO.builder()
+                    .id(row.getLastMessageId())
+                    .chatRoomId(row.getChatRoomId())
+                    .senderId(row.getLastMessageSenderId())
+                    .senderName(sentByUser1
+                            ? fullName(row.getUser1FirstName(), row.getUser1LastName())
+                            : fullName(row.getUser2FirstName(), row.getUser2LastName()))
+                    .senderAvatar(resolveUrl(sentByUser1 ? row.getUser1AvatarPath() : row.getUser2AvatarPath()))
+                    .content(row.getLastMessageContent())
+                    .messageType(row.getLastMessageType() != null ? MessageType.valueOf(row.getLastMessageType()) : null)
+                    .isRead(row.getLastMessageIsRead())
+                    .readAt(row.getLastMessageReadAt())
+                    .createdAt(row.getLastMessageCreatedAt())
+                    .updatedAt(row.getLastMessageUpdatedAt())
+                    .imageUrl(resolveUrl(row.getLastMessageImageUrl()))
+                    .imageUploaderId(row.getLastMessageImageUploaderId())
+                    .recalled(row.getLastMessageRecalled() != null ? row.getLastMessageRecalled() : false)
+                    .recalledAt(row.getLastMessageRecalledAt())
+                    .build();
+        }
+
+        return ChatRoomDTO.builder()
+                .id(row.getChatRoomId())
+                .user1Id(row.getUser1Id())
+                .user1Name(fullName(row.getUser1FirstName(), row.getUser1LastName()))
+                .user1Avatar(resolveUrl(row.getUser1AvatarPath()))
+                .user2Id(row.getUser2Id())
+                .user2Name(fullName(row.getUser2FirstName(), row.getUser2LastName()))
+                .user2Avatar(resolveUrl(row.getUser2AvatarPath()))
+                .isActive(row.getIsActive())
+                .createdAt(row.getCreatedAt())
+                .updatedAt(row.getUpdatedAt())
+                .unreadCount(row.getUnreadCount() != null ? row.getUnreadCount() : 0L)
+                .lastMessage(lastMessage)
+                .build();
+    }
+
     public List<ChatRoomDTO> toChatRoomDTOList(List<ChatRoom> chatRooms) {
         if (chatRooms == null) {
             return null;
@@ -85,34 +137,38 @@ public class ChatMapper {
     }
     
     public MessageDTO toMessageDTO(Message message) {
+        return toMessageDTO(message, List.of());
+    }
+
+    /**
+     * Dựng MessageDTO; isRead/readAt suy ra từ mốc đã đọc của người nhận trong roomWatermarks.
+     */
+    public MessageDTO toMessageDTO(Message message, List<ChatReadWatermark> roomWatermarks) {
         if (message == null) {
             return null;
         }
         
         String senderAvatar = null;
         if (message.getSender() != null) {
-            var avatar = photoService.getUserAvatarById(message.getSender().getId());
-            senderAvatar = avatar != null ? avatar.getUrl() : null;
-        }
-        String imageUrl = null;
-        if (message.getImageUrl() != null && !message.getImageUrl().isEmpty()) {
-            if (message.getImageUrl().startsWith("http")) {
-                imageUrl = message.getImageUrl();
-            } else {
-                imageUrl = baseUrl + "/" + message.getImageUrl();
-            }
+            senderAvatar = photoService.getUserAvatarUrl(message.getSender().getId());
         }
+        String imageUrl = resolveUrl(message.getImageUrl());
+        ChatReadWatermark recipientWatermark = message.getSender() != null
+                ? findRecipientWatermark(roomWatermarks, message.getSender().getId())
+                : null;
+        boolean isRead = isReadBy(recipientWatermark, message.getId());
         
         return MessageDTO.builder()
                 .id(message.getId())
                 .chatRoomId(message.getChatRoom() != null ? message.getChatRoom().getId() : null)
+                .sequence(message.getRoomSeq())
                 .senderId(message.getSender() != null ? message.getSender().getId() : null)
                 .senderName(message.getSender() != null ? message.getSender().getFullName() : null)
                 .senderAvatar(senderAvatar)
                 .content(message.getContent())
                 .messageType(message.getMessageType())
-                .isRead(message.getIsRead())
-                .readAt(message.getReadAt())
+                .isRead(isRead)
+                .readAt(isRead ? recipientWatermark.getReadAt() : null)
                 .createdAt(message.getCreatedAt())
                 .updatedAt(message.getUpdatedAt())
                 .imageUrl(imageUrl)
@@ -123,11 +179,75 @@ public class ChatMapper {
     }
     
     public List<MessageDTO> toMessageDTOList(List<Message> messages) {
+        return toMessageDTOList(messages, List.of());
+    }
+
+    public List<MessageDTO> toMessageDTOList(List<Message> messages, List<ChatReadWatermark> roomWatermarks) {
         if (messages == null) {
             return null;
         }
         return messages.stream()
-                .map(this::toMessageDTO)
+                .map(message -> toMessageDTO(message, roomWatermarks))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Dựng MessageDTO từ một dòng timeline, không truy vấn thêm (avatar lấy từ cache của PhotoService).
+     */
+    public MessageDTO toMessageDTO(MessageTimelineProjection row, List<ChatReadWatermark> roomWatermarks) {
+        ChatReadWatermark recipientWatermark = findRecipientWatermark(roomWatermarks, row.getSenderId());
+        boolean isRead = isReadBy(recipientWatermark, row.getId());
+
+        return MessageDTO.builder()
+                .id(row.getId())
+                .chatRoomId(row.getChatRoomId())
+                .sequence(row.getSequence())
+                .senderId(row.getSenderId())
+                .senderName(fullName(row.getSenderFirstName(), row.getSenderLastName()))
+                .senderAvatar(photoService.getUserAvatarUrl(row.getSenderId()))
+                .content(row.getContent())
+                .messageType(row.getMessageType())
+                .isRead(isRead)
+                .readAt(isRead ? recipientWatermark.getReadAt() : null)
+                .createdAt(row.getCreatedAt())
+                .updatedAt(row.getUpdatedAt())
+                .imageUrl(resolveUrl(row.getImageUrl()))
+                .imageUploaderId(row.getImageUploaderId())
+                .recalled(row.getRecalled() != null ? row.getRecalled() : false)
+                .recalledAt(row.getRecalledAt())
+                .build();
+    }
+
+    public List<MessageDTO> toTimelineDTOList(List<MessageTimelineProjection> rows, List<ChatReadWatermark> roomWatermarks) {
+        return rows.stream()
+                .map(row -> toMessageDTO(row, roomWatermarks))
                 .collect(Collectors.toList());
     }
-} 
\ No newline at end of file
+
+    private boolean isReadBy(ChatReadWatermark recipientWatermark, Long messageId) {
+        return recipientWatermark != null && messageId != null
+                && messageId <= recipientWatermark.getLastReadMessageId();
+    }
+
+    // Phòng chat 1-1: người nhận là người còn lại
+    private ChatReadWatermark findRecipientWatermark(List<ChatReadWatermark> roomWatermarks, Long senderId) {
+        for (ChatReadWatermark watermark : roomWatermarks) {
+            if (!watermark.getUserId().equals(senderId)) {
+                return watermark;
+            }
+        }
+        return null;
+    }
+
+    // Cùng quy tắc với User.getFullName()
+    private String fullName(String firstName, String lastName) {
+        return firstName + " " + lastName;
+    }
+
+    private String resolveUrl(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        return path.startsWith("http") ? path : baseUrl + "/" + path;
+    }
+}
@@ -0,0 +1,60 @@
+package com.amoura.module.chat.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng hộp thư chat: phòng, tên và avatar hai bên, tin nhắn cuối nhìn thấy được và số tin chưa đọc.
+ * Các cột lastMessage* là null khi phòng chưa có tin nhắn nào hiển thị với user.
+ */
+public interface ChatInboxProjection {
+
+    Long getChatRoomId();
+
+    Long getUser1Id();
+
+    String getUser1FirstName();
+
+    String getUser1LastName();
+
+    String getUser1AvatarPath();
+
+    Long getUser2Id();
+
+    String getUser2FirstName();
+
+    String getUser2LastName();
+
+    String getUser2AvatarPath();
+
+    Boolean getIsActive();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    Long getUnreadCount();
+
+    Long getLastMessageId();
+
+    Long getLastMessageSenderId();
+
+    String getLastMessageContent();
+
+    String getLastMessageType();
+
+    Boolean getLastMessageIsRead();
+
+    LocalDateTime getLastMessageReadAt();
+
+    LocalDateTime getLastMessageCreatedAt();
+
+    LocalDateTime getLastMessageUpdatedAt();
+
+    String getLastMessageImageUrl();
+
+    Long getLastMessageImageUploaderId();
+
+    Boolean getLastMessageRecalled();
+
+    LocalDateTime getLastMessageRecalledAt();
+}
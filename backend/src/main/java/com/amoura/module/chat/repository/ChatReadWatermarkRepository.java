@@ -0,0 +1,41 @@
+package com.amoura.module.chat.repository;
+
+import com.amoura.module.chat.domain.ChatReadWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ChatReadWatermarkRepository extends JpaRepository<ChatReadWatermark, ChatReadWatermark.ChatReadWatermarkId> {
+
+    List<ChatReadWatermark> findByChatRoomId(Long chatRoomId);
+
+    List<ChatReadWatermark> findByChatRoomIdIn(Collection<Long> chatRoomIds);
+
+    // Đồng bộ delta: mốc đã đọc của cả hai bên trong các phòng của user được đẩy lên sau mốc
+    @Query("SELECT w FROM ChatReadWatermark w " +
+           "WHERE w.chatRoomId IN (SELECT cr.id FROM ChatRoom cr WHERE cr.user1.id = :userId OR cr.user2.id = :userId) " +
+           "AND w.readAt > :since")
+    List<ChatReadWatermark> findReadSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    // Đẩy mốc đã đọc lên tin nhắn mới nhất của phòng; trả về 0 nếu mốc không đổi (không có gì mới để đọc)
+    @Modifying
+    @Query(value = """
+    INSERT INTO chat_read_watermarks (chat_room_id, user_id, last_read_message_id, read_at)
+    SELECT :chatRoomId, :userId, m.id, :readAt
+    FROM messages m
+    WHERE m.chat_room_id = :chatRoomId
+    ORDER BY m.id DESC
+    LIMIT 1
+    ON CONFLICT (chat_room_id, user_id) DO UPDATE
+    SET last_read_message_id = EXCLUDED.last_read_message_id, read_at = EXCLUDED.read_at
+    WHERE chat_read_watermarks.last_read_message_id < EXCLUDED.last_read_message_id
+    """, nativeQuery = true)
+    int advanceToLatestMessage(@Param("chatRoomId") Long chatRoomId,
+                               @Param("userId") Long userId,
+                               @Param("readAt") LocalDateTime readAt);
+}
@@ -0,0 +1,11 @@
+package com.amoura.module.chat.repository;
+
+/**
+ * Hai người tham gia của một phòng chat, dùng cho cache kiểm tra quyền subscribe.
+ */
+public interface ChatRoomParticipantsProjection {
+
+    Long getUser1Id();
+
+    Long getUser2Id();
+}
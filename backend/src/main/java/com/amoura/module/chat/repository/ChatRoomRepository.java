@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,9 +34,65 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
            "(cr.user1.id = :userId OR cr.user2.id = :userId) AND cr.isActive = true")
     Long countActiveChatRoomsByUserId(@Param("userId") Long userId);
 
+    // Đồng bộ delta: phòng mới tạo hoặc có thay đổi (tin nhắn mới, vô hiệu hoá, ...) sau mốc
+    @Query("SELECT cr FROM ChatRoom cr JOIN FETCH cr.user1 JOIN FETCH cr.user2 " +
+           "WHERE (cr.user1.id = :userId OR cr.user2.id = :userId) AND cr.updatedAt > :since")
+    List<ChatRoom> findChangedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
     @Query("SELECT c.id FROM ChatRoom c WHERE c.user1.id = :userId OR c.user2.id = :userId")
     List<Long> findChatRoomIdsByUserId(@Param("userId") Long userId);
 
     @Query("SELECT COUNT(c) > 0 FROM ChatRoom c WHERE c.id = :chatRoomId AND (c.user1.id = :userId OR c.user2.id = :userId)")
     boolean isUserInChatRoom(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId);
-} 
\ No newline at end of file
+
+    @Query("SELECT c.user1.id AS user1Id, c.user2.id AS user2Id FROM ChatRoom c WHERE c.id = :chatRoomId")
+    Optional<ChatRoomParticipantsProjection> findParticipantsById(@Param("chatRoomId") Long chatRoomId);
+
+    // Hộp thư trong một truy vấn: avatar, tin nhắn cuối và số chưa đọc lấy bằng LATERAL theo từng phòng.
+    // Trạng thái đã đọc lấy từ mốc đã đọc của hai bên (w1, w2)
+    @Query(value = """
+    SELECT cr.id AS chatRoomId,
+           cr.user1_id AS user1Id, u1.first_name AS user1FirstName, u1.last_name AS user1LastName, a1.path AS user1AvatarPath,
+           cr.user2_id AS user2Id, u2.first_name AS user2FirstName, u2.last_name AS user2LastName, a2.path AS user2AvatarPath,
+           cr.is_active AS isActive, cr.created_at AS createdAt, cr.updated_at AS updatedAt,
+           unread.total AS unreadCount,
+           lm.id AS lastMessageId, lm.sender_id AS lastMessageSenderId, lm.content AS lastMessageContent,
+           lm.message_type AS lastMessageType,
+           lm.id <= COALESCE(CASE WHEN lm.sender_id = cr.user1_id THEN w2.last_read_message_id ELSE w1.last_read_message_id END, 0)
+               AS lastMessageIsRead,
+           CASE WHEN lm.id <= COALESCE(CASE WHEN lm.sender_id = cr.user1_id THEN w2.last_read_message_id ELSE w1.last_read_message_id END, 0)
+               THEN CASE WHEN lm.sender_id = cr.user1_id THEN w2.read_at ELSE w1.read_at END END AS lastMessageReadAt,
+           lm.created_at AS lastMessageCreatedAt, lm.updated_at AS lastMessageUpdatedAt,
+           lm.image_url AS lastMessageImageUrl, lm.image_uploader_id AS lastMessageImageUploaderId,
+           lm.recalled AS lastMessageRecalled, lm.recalled_at AS lastMessageRecalledAt
+    FROM chat_rooms cr
+    JOIN users u1 ON u1.id = cr.user1_id
+    JOIN users u2 ON u2.id = cr.user2_id
+    LEFT JOIN chat_read_watermarks w1 ON w1.chat_room_id = cr.id AND w1.user_id = cr.user1_id
+    LEFT JOIN chat_read_watermarks w2 ON w2.chat_room_id = cr.id AND w2.user_id = cr.user2_id
+    LEFT JOIN LATERAL (
+        SELECT p.path FROM photos p WHERE p.user_id = cr.user1_id AND p.type = 'avatar' ORDER BY p.id LIMIT 1
+    ) a1 ON true
+    LEFT JOIN LATERAL (
+        SELECT p.path FROM photos p WHERE p.user_id = cr.user2_id AND p.type = 'avatar' ORDER BY p.id LIMIT 1
+    ) a2 ON true
+    LEFT JOIN LATERAL (
+        SELECT m.* FROM messages m
+        WHERE m.chat_room_id = cr.id
+        AND NOT EXISTS (SELECT 1 FROM user_message_visibilities v WHERE v.user_id = :userId AND v.message_id = m.id)
+        ORDER BY m.created_at DESC, m.id DESC
+        LIMIT 1
+    ) lm ON true
+    LEFT JOIN LATERAL (
+        SELECT COUNT(*) AS total FROM messages m
+        WHERE m.chat_room_id = cr.id AND m.sender_id <> :userId
+        AND m.id > COALESCE(CASE WHEN cr.user1_id = :userId THEN w1.last_read_message_id ELSE w2.last_read_message_id END, 0)
+        AND m.recalled IS NOT TRUE
+        AND NOT EXISTS (SELECT 1 FROM user_message_visibilities v WHERE v.user_id = :userId AND v.message_id = m.id)
+    ) unread ON true
+    WHERE (cr.user1_id = :userId OR cr.user2_id = :userId) AND cr.is_active = true
+    ORDER BY cr.updated_at DESC NULLS LAST, cr.id DESC
+    LIMIT :limit
+    """, nativeQuery = true)
+    List<ChatInboxProjection> findInboxByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+}
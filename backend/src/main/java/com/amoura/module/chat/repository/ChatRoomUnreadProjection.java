@@ -0,0 +1,11 @@
+package com.amoura.module.chat.repository;
+
+/**
+ * Số tin nhắn chưa đọc của một user trong một phòng, dùng để nạp bộ đếm chưa đọc.
+ */
+public interface ChatRoomUnreadProjection {
+
+    Long getChatRoomId();
+
+    Long getUnreadCount();
+}
@@ -3,7 +3,6 @@ package com.amoura.module.chat.repository;
 import com.amoura.module.chat.domain.Message;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,76 +15,159 @@ import java.util.Optional;
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
     @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId) " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id) " +
            "ORDER BY m.createdAt DESC")
     List<Message> findByChatRoomIdOrderByCreatedAtDesc(@Param("chatRoomId") Long chatRoomId, 
                                                       @Param("userId") Long userId, 
                                                       Pageable pageable);
     
-    @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.id < :cursor " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId) " +
-           "ORDER BY m.createdAt DESC")
-    List<Message> findByChatRoomIdAndCursorOrderByCreatedAtDesc(
-            @Param("chatRoomId") Long chatRoomId, 
-            @Param("cursor") Long cursor,
-            @Param("userId") Long userId,
-            Pageable pageable);
-    
-    @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.id > :cursor " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId) " +
-           "ORDER BY m.createdAt ASC")
-    List<Message> findByChatRoomIdAndCursorOrderByCreatedAtAsc(
-            @Param("chatRoomId") Long chatRoomId, 
-            @Param("cursor") Long cursor,
-            @Param("userId") Long userId,
-            Pageable pageable);
+    // Dòng thời gian của phòng: lọc và sắp xếp cùng theo (chat_room_id, id) để đi thẳng trên idx_messages_room_id,
+    // trang sâu tốn như trang đầu. Tên người gửi lấy trong cùng truy vấn.
+    String TIMELINE_SELECT = "SELECT m.id AS id, m.chatRoom.id AS chatRoomId, m.roomSeq AS sequence, s.id AS senderId, " +
+           "s.firstName AS senderFirstName, s.lastName AS senderLastName, m.content AS content, " +
+           "m.messageType AS messageType, m.createdAt AS createdAt, m.updatedAt AS updatedAt, " +
+           "m.imageUrl AS imageUrl, m.imageUploaderId AS imageUploaderId, " +
+           "m.recalled AS recalled, m.recalledAt AS recalledAt " +
+           "FROM Message m JOIN m.sender s WHERE m.chatRoom.id = :chatRoomId " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id) ";
+
+    @Query(TIMELINE_SELECT + "ORDER BY m.id DESC")
+    List<MessageTimelineProjection> findTimeline(@Param("chatRoomId") Long chatRoomId,
+                                                 @Param("userId") Long userId,
+                                                 Pageable pageable);
+
+    // Tin nhắn cũ hơn cursor
+    @Query(TIMELINE_SELECT + "AND m.id < :cursor ORDER BY m.id DESC")
+    List<MessageTimelineProjection> findTimelineBefore(@Param("chatRoomId") Long chatRoomId,
+                                                       @Param("cursor") Long cursor,
+                                                       @Param("userId") Long userId,
+                                                       Pageable pageable);
+
+    // Tin nhắn mới hơn cursor
+    @Query(TIMELINE_SELECT + "AND m.id > :cursor ORDER BY m.id ASC")
+    List<MessageTimelineProjection> findTimelineAfter(@Param("chatRoomId") Long chatRoomId,
+                                                      @Param("cursor") Long cursor,
+                                                      @Param("userId") Long userId,
+                                                      Pageable pageable);
     
     @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId) " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id) " +
            "ORDER BY m.createdAt DESC")
     List<Message> findLatestMessagesByChatRoomId(@Param("chatRoomId") Long chatRoomId, 
                                                 @Param("userId") Long userId, 
                                                 Pageable pageable);
     
+    // Chưa đọc = tin nhắn chưa thu hồi của người kia nằm sau mốc đã đọc của user (xem ChatReadWatermark)
     @Query("SELECT COUNT(m) FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.sender.id != :userId AND m.isRead = false " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
+           "AND m.sender.id != :userId " +
+           "AND m.id > COALESCE((SELECT w.lastReadMessageId FROM ChatReadWatermark w " +
+           "WHERE w.chatRoomId = :chatRoomId AND w.userId = :userId), 0) " +
+           "AND (m.recalled IS NULL OR m.recalled = false) " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
     Long countUnreadMessagesByChatRoomIdAndUserId(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId);
+
+    // Số chưa đọc của user theo từng phòng đang hoạt động (chỉ trả về phòng có tin chưa đọc)
+    @Query(value = """
+    SELECT m.chat_room_id AS chatRoomId, COUNT(*) AS unreadCount
+    FROM chat_rooms cr
+    JOIN messages m ON m.chat_room_id = cr.id
+    LEFT JOIN chat_read_watermarks w ON w.chat_room_id = cr.id AND w.user_id = :userId
+    WHERE (cr.user1_id = :userId OR cr.user2_id = :userId) AND cr.is_active = true
+    AND m.sender_id <> :userId
+    AND m.id > COALESCE(w.last_read_message_id, 0)
+    AND m.recalled IS NOT TRUE
+    AND NOT EXISTS (SELECT 1 FROM user_message_visibilities v WHERE v.user_id = :userId AND v.message_id = m.id)
+    GROUP BY m.chat_room_id
+    """, nativeQuery = true)
+    List<ChatRoomUnreadProjection> countUnreadMessagesByChatRoomForUser(@Param("userId") Long userId);
     
     @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.sender.id != :userId AND m.isRead = false " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
+           "AND m.sender.id != :userId " +
+           "AND m.id > COALESCE((SELECT w.lastReadMessageId FROM ChatReadWatermark w " +
+           "WHERE w.chatRoomId = :chatRoomId AND w.userId = :userId), 0) " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
     List<Message> findUnreadMessagesByChatRoomIdAndUserId(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId);
     
-    @Modifying
-    @Query("UPDATE Message m SET m.isRead = true, m.readAt = :readAt " +
-           "WHERE m.chatRoom.id = :chatRoomId AND m.sender.id != :userId AND m.isRead = false " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
-    void markMessagesAsRead(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId, @Param("readAt") LocalDateTime readAt);
-    
     @Query("SELECT m FROM Message m WHERE m.id = :messageId AND m.chatRoom.id = :chatRoomId " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
     Optional<Message> findByIdAndChatRoomId(@Param("messageId") Long messageId, 
                                            @Param("chatRoomId") Long chatRoomId,
                                            @Param("userId") Long userId);
     
     @Query("SELECT MAX(m.createdAt) FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
     Optional<LocalDateTime> findLastMessageTimeByChatRoomId(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId);
 
     @Query("SELECT m FROM Message m WHERE m.imageUrl = :imageUrl " +
-           "AND m.id NOT IN (SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId)")
-    Optional<Message> findByImageUrl(@Param("imageUrl") String imageUrl, @Param("userId") Long userId);
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
+    List<Message> findByImageUrl(@Param("imageUrl") String imageUrl, @Param("userId") Long userId);
 
     @Query("""
     SELECT m FROM Message m
     WHERE m.chatRoom.id = :chatRoomId
-    AND m.id NOT IN (
-        SELECT v.messageId FROM UserMessageVisibility v WHERE v.userId = :userId
+    AND NOT EXISTS (
+        SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id
     )
     ORDER BY m.createdAt DESC
     """)
     List<Message> findVisibleMessagesForUser(@Param("chatRoomId") Long chatRoomId, @Param("userId") Long userId, Pageable pageable);
-} 
\ No newline at end of file
+
+    // Tìm kiếm toàn văn qua chỉ mục GIN trên search_vector (V29), phân trang keyset theo id giảm dần.
+    // Tin nhắn đã thu hồi không có search_vector nên không bao giờ khớp.
+    @Query(value = """
+    SELECT m.* FROM messages m
+    JOIN chat_rooms cr ON cr.id = m.chat_room_id
+    WHERE (cr.user1_id = :userId OR cr.user2_id = :userId) AND cr.is_active = true
+    AND m.search_vector @@ plainto_tsquery('simple', :query)
+    AND m.id < :beforeId
+    AND NOT EXISTS (
+        SELECT 1 FROM user_message_visibilities v WHERE v.user_id = :userId AND v.message_id = m.id
+    )
+    ORDER BY m.id DESC
+    LIMIT :limit
+    """, nativeQuery = true)
+    List<Message> searchVisibleMessages(@Param("userId") Long userId,
+                                        @Param("query") String query,
+                                        @Param("beforeId") Long beforeId,
+                                        @Param("limit") int limit);
+
+    @Query(value = """
+    SELECT m.* FROM messages m
+    JOIN chat_rooms cr ON cr.id = m.chat_room_id
+    WHERE m.chat_room_id = :chatRoomId AND cr.is_active = true
+    AND m.search_vector @@ plainto_tsquery('simple', :query)
+    AND m.id < :beforeId
+    AND NOT EXISTS (
+        SELECT 1 FROM user_message_visibilities v WHERE v.user_id = :userId AND v.message_id = m.id
+    )
+    ORDER BY m.id DESC
+    LIMIT :limit
+    """, nativeQuery = true)
+    List<Message> searchVisibleMessagesInChatRoom(@Param("chatRoomId") Long chatRoomId,
+                                                  @Param("userId") Long userId,
+                                                  @Param("query") String query,
+                                                  @Param("beforeId") Long beforeId,
+                                                  @Param("limit") int limit);
+
+    // Đồng bộ delta: tin nhắn mới trên mọi phòng của user kể từ mốc, theo thứ tự id tăng dần
+    @Query("SELECT m.id AS id, m.chatRoom.id AS chatRoomId, m.roomSeq AS sequence, s.id AS senderId, " +
+           "s.firstName AS senderFirstName, s.lastName AS senderLastName, m.content AS content, " +
+           "m.messageType AS messageType, m.createdAt AS createdAt, m.updatedAt AS updatedAt, " +
+           "m.imageUrl AS imageUrl, m.imageUploaderId AS imageUploaderId, " +
+           "m.recalled AS recalled, m.recalledAt AS recalledAt " +
+           "FROM Message m JOIN m.sender s " +
+           "WHERE m.chatRoom.id IN (SELECT cr.id FROM ChatRoom cr WHERE cr.user1.id = :userId OR cr.user2.id = :userId) " +
+           "AND m.createdAt > :since " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id) " +
+           "ORDER BY m.id ASC")
+    List<MessageTimelineProjection> findSyncMessages(@Param("userId") Long userId,
+                                                     @Param("since") LocalDateTime since,
+                                                     Pageable pageable);
+
+    // Đồng bộ delta: tin nhắn cũ (trước mốc) bị thu hồi sau mốc
+    @Query("SELECT m.id AS id, m.chatRoom.id AS chatRoomId, m.recalledAt AS recalledAt FROM Message m " +
+           "WHERE m.chatRoom.id IN (SELECT cr.id FROM ChatRoom cr WHERE cr.user1.id = :userId OR cr.user2.id = :userId) " +
+           "AND m.recalledAt > :since AND m.createdAt <= :since " +
+           "AND NOT EXISTS (SELECT v FROM UserMessageVisibility v WHERE v.userId = :userId AND v.messageId = m.id)")
+    List<RecalledMessageProjection> findRecalledSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+}
@@ -0,0 +1,40 @@
+package com.amoura.module.chat.repository;
+
+import com.amoura.module.chat.domain.MessageType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một tin nhắn trong dòng thời gian của phòng, kèm tên người gửi lấy trong cùng truy vấn
+ * (không nạp entity Message / User).
+ */
+public interface MessageTimelineProjection {
+
+    Long getId();
+
+    Long getChatRoomId();
+
+    Long getSequence();
+
+    Long getSenderId();
+
+    String getSenderFirstName();
+
+    String getSenderLastName();
+
+    String getContent();
+
+    MessageType getMessageType();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    String getImageUrl();
+
+    Long getImageUploaderId();
+
+    Boolean getRecalled();
+
+    LocalDateTime getRecalledAt();
+}
@@ -0,0 +1,15 @@
+package com.amoura.module.chat.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tin nhắn đã bị thu hồi, dùng cho đồng bộ delta.
+ */
+public interface RecalledMessageProjection {
+
+    Long getId();
+
+    Long getChatRoomId();
+
+    LocalDateTime getRecalledAt();
+}
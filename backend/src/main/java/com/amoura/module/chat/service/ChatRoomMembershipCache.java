@@ -0,0 +1,86 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.repository.ChatRoomParticipantsProjection;
+import com.amoura.module.chat.repository.ChatRoomRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache thành viên phòng chat (chatRoomId -> hai userId), LRU có giới hạn.
+ * Được nạp khi tạo/lấy phòng và khi cache miss; bị xoá khi phòng bị vô hiệu hoá.
+ * Phòng không tồn tại không được cache.
+ */
+@Component
+public class ChatRoomMembershipCache {
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final Map<Long, long[]> participantsByRoom;
+
+    public ChatRoomMembershipCache(ChatRoomRepository chatRoomRepository,
+                                   @Value("${app.chat.membership-cache.max-rooms:100000}") int maxRooms) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.participantsByRoom = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > maxRooms;
+            }
+        };
+    }
+
+    public boolean isMember(Long chatRoomId, Long userId) {
+        long[] participants;
+        synchronized (participantsByRoom) {
+            participants = participantsByRoom.get(chatRoomId);
+        }
+        if (participants == null) {
+            Optional<ChatRoomParticipantsProjection> loaded = chatRoomRepository.findParticipantsById(chatRoomId);
+            if (loaded.isEmpty()) {
+                return false;
+            }
+            participants = new long[]{loaded.get().getUser1Id(), loaded.get().getUser2Id()};
+            synchronized (participantsByRoom) {
+                participantsByRoom.put(chatRoomId, participants);
+            }
+        }
+        return participants[0] == userId || participants[1] == userId;
+    }
+
+    public void put(Long chatRoomId, Long user1Id, Long user2Id) {
+        synchronized (participantsByRoom) {
+            participantsByRoom.put(chatRoomId, new long[]{user1Id, user2Id});
+        }
+    }
+
+    /**
+     * Xoá ngay và một lần nữa sau khi commit (nếu đang trong transaction).
+     */
+    public void evict(Long chatRoomId) {
+        remove(chatRoomId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(chatRoomId);
+                }
+            });
+        }
+    }
+
+    int size() {
+        synchronized (participantsByRoom) {
+            return participantsByRoom.size();
+        }
+    }
+
+    private void remove(Long chatRoomId) {
+        synchronized (participantsByRoom) {
+            participantsByRoom.remove(chatRoomId);
+        }
+    }
+}
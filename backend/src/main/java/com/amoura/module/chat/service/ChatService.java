@@ -1,11 +1,13 @@
 package com.amoura.module.chat.service;
 
 import com.amoura.module.chat.dto.ChatRoomDTO;
+import com.amoura.module.chat.dto.ChatSyncResponse;
 import com.amoura.module.chat.dto.CursorPaginationRequest;
 import com.amoura.module.chat.dto.CursorPaginationResponse;
 import com.amoura.module.chat.dto.MessageDTO;
 import com.amoura.module.chat.dto.SendMessageRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatService {
@@ -21,7 +23,10 @@ public interface ChatService {
     CursorPaginationResponse<MessageDTO> getChatMessages(Long chatRoomId, Long userId, CursorPaginationRequest request);
     void markMessagesAsRead(Long chatRoomId, Long userId);
     Long getUnreadMessageCount(Long chatRoomId, Long userId);
+    Long getTotalUnreadMessageCount(Long userId);
     void recallMessage(Long messageId, Long userId);
+    ChatSyncResponse syncChanges(Long userId, LocalDateTime since);
+    CursorPaginationResponse<MessageDTO> searchMessages(Long userId, String query, Long chatRoomId, CursorPaginationRequest request);
     
     // WebSocket operations
     void sendMessageToChatRoom(Long chatRoomId, MessageDTO message);
@@ -1,44 +1,65 @@
 package com.amoura.module.chat.service;
 
 import com.amoura.common.exception.ApiException;
+import com.amoura.infrastructure.storage.ContentAddressedFileStorage;
+import com.amoura.module.chat.domain.ChatReadWatermark;
 import com.amoura.module.chat.domain.ChatRoom;
 import com.amoura.module.chat.domain.Message;
 import com.amoura.module.chat.domain.MessageType;
 import com.amoura.module.chat.dto.*;
 import com.amoura.module.chat.mapper.ChatMapper;
+import com.amoura.module.chat.repository.ChatReadWatermarkRepository;
 import com.amoura.module.chat.repository.ChatRoomRepository;
 import com.amoura.module.chat.repository.MessageRepository;
+import com.amoura.module.chat.repository.MessageTimelineProjection;
 import com.amoura.module.chat.repository.UserMessageVisibilityRepository;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.repository.UserRepository;
+import com.amoura.module.user.service.OnlineUserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
-import static java.rmi.server.LogStream.log;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @Transactional
 public class ChatServiceImpl implements ChatService {
 
+    private static final int MAX_SEARCH_QUERY_LENGTH = 200;
+    private static final int MAX_SEARCH_LIMIT = 50;
+    private static final int MAX_SYNC_MESSAGES = 500;
+    private static final long SYNC_OVERLAP_SECONDS = 5;
+
     private final ChatRoomRepository chatRoomRepository;
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final ChatMapper chatMapper;
     private final SimpMessagingTemplate messagingTemplate;
     private final UserMessageVisibilityRepository userMessageVisibilityRepository;
+    private final ChatReadWatermarkRepository chatReadWatermarkRepository;
+    private final TypingStateEngine typingStateEngine;
+    private final ChatRoomMembershipCache chatRoomMembershipCache;
+    private final OnlineUserService onlineUserService;
+    private final UnreadCounterStore unreadCounterStore;
+    private final MessageSequencer messageSequencer;
+    private final ContentAddressedFileStorage fileStorage;
 
     @Override
     public ChatRoomDTO createOrGetChatRoom(Long userId1, Long userId2) {
@@ -50,6 +71,7 @@ public class ChatServiceImpl implements ChatService {
                 chatRoom.setIsActive(true);
                 chatRoom = chatRoomRepository.save(chatRoom);
             }
+            chatRoomMembershipCache.put(chatRoom.getId(), chatRoom.getUser1().getId(), chatRoom.getUser2().getId());
             return chatMapper.toChatRoomDTO(chatRoom, userId1);
         }
 
@@ -65,16 +87,17 @@ public class ChatServiceImpl implements ChatService {
                 .build();
 
         ChatRoom savedChatRoom = chatRoomRepository.save(newChatRoom);
+        chatRoomMembershipCache.put(savedChatRoom.getId(), user1.getId(), user2.getId());
+        onlineUserService.invalidateChatRooms(user1.getId());
+        onlineUserService.invalidateChatRooms(user2.getId());
         return chatMapper.toChatRoomDTO(savedChatRoom);
     }
 
     @Override
     public List<ChatRoomDTO> getUserChatRooms(Long userId, CursorPaginationRequest request) {
-        Pageable pageable = PageRequest.of(0, request.getLimit());
-        List<ChatRoom> chatRooms = chatRoomRepository.findByUserIdOrderByUpdatedAtDesc(userId, pageable);
-        
-        return chatRooms.stream()
-                .map(chatRoom -> chatMapper.toChatRoomDTO(chatRoom, userId))
+        // Một truy vấn cho cả danh sách: tin nhắn cuối, avatar và số chưa đọc của từng phòng
+        return chatRoomRepository.findInboxByUserId(userId, request.getLimit()).stream()
+                .map(chatMapper::toChatRoomDTO)
                 .collect(Collectors.toList());
     }
 
@@ -101,9 +124,12 @@ public class ChatServiceImpl implements ChatService {
 
         chatRoom.setIsActive(false);
         chatRoomRepository.save(chatRoom);
+        chatRoomMembershipCache.evict(chatRoomId);
+        unreadCounterStore.roomRemoved(chatRoomId, chatRoom.getUser1().getId(), chatRoom.getUser2().getId());
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MessageDTO sendMessage(SendMessageRequest request, Long senderId) {
         // Validate message type and content
         switch (request.getMessageType()) {
@@ -146,23 +172,36 @@ public class ChatServiceImpl implements ChatService {
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Sender not found"));
 
+        String imageUrl = processImageUrl(request.getImageUrl());
+        // Mỗi tin nhắn dùng ảnh (kể cả gửi lại / chuyển tiếp cùng URL) giữ một lượt tham chiếu tới file
+        if (!fileStorage.acquire(imageUrl)) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Image is no longer available, please upload it again", "IMAGE_NOT_AVAILABLE");
+        }
+
         Message message = Message.builder()
                 .chatRoom(chatRoom)
                 .sender(sender)
                 .content(request.getContent())
                 .messageType(request.getMessageType())
                 .isRead(false)
-                .imageUrl(processImageUrl(request.getImageUrl()))
+                .imageUrl(imageUrl)
                 .imageUploaderId(request.getImageUrl() != null ? senderId : null)
                 .build();
 
-        Message savedMessage = messageRepository.save(message);
-        
-        chatRoom.setUpdatedAt(LocalDateTime.now());
-        chatRoomRepository.save(chatRoom);
-
-        MessageDTO messageDTO = chatMapper.toMessageDTO(savedMessage);
-        sendMessageToChatRoom(chatRoom.getId(), messageDTO);
+        // Ghi, cấp số thứ tự và phát qua hàng đợi của phòng (cập nhật chat_rooms một lần mỗi lô)
+        CompletableFuture<MessageDTO> sequenced = messageSequencer.submit(message,
+                written -> sendMessageToChatRoom(written.getChatRoomId(), written));
+        MessageDTO messageDTO;
+        try {
+            messageDTO = awaitSequenced(sequenced);
+        } catch (ApiException e) {
+            // Tin nhắn không được ghi: trả lại lượt tham chiếu tới file
+            if (sequenced.isCompletedExceptionally()) {
+                fileStorage.release(imageUrl);
+            }
+            throw e;
+        }
+        unreadCounterStore.messageSent(chatRoom.getId(), otherParticipantId(chatRoom, senderId));
         
         return messageDTO;
     }
@@ -177,7 +216,7 @@ public class ChatServiceImpl implements ChatService {
             throw new ApiException(HttpStatus.FORBIDDEN, "Access denied to this chat room");
         }
 
-        List<Message> messages;
+        List<MessageTimelineProjection> messages;
         Long nextCursor = null;
         Long previousCursor = null;
         boolean hasNext = false;
@@ -185,7 +224,7 @@ public class ChatServiceImpl implements ChatService {
 
         if (request.getCursor() == null) {
             // First page - get latest messages
-            messages = messageRepository.findVisibleMessagesForUser(chatRoomId, userId, 
+            messages = messageRepository.findTimeline(chatRoomId, userId,
                     PageRequest.of(0, request.getLimit() + 1)); // +1 to check if there are more
             
             if (messages.size() > request.getLimit()) {
@@ -200,7 +239,7 @@ public class ChatServiceImpl implements ChatService {
             // Subsequent pages
             if ("NEXT".equalsIgnoreCase(request.getDirection())) {
                 // Get messages before cursor (older messages)
-                messages = messageRepository.findByChatRoomIdAndCursorOrderByCreatedAtDesc(
+                messages = messageRepository.findTimelineBefore(
                         chatRoomId, request.getCursor(), userId,
                         PageRequest.of(0, request.getLimit() + 1));
                 
@@ -215,7 +254,7 @@ public class ChatServiceImpl implements ChatService {
                 }
             } else {
                 // Get messages after cursor (newer messages)
-                messages = messageRepository.findByChatRoomIdAndCursorOrderByCreatedAtAsc(
+                messages = messageRepository.findTimelineAfter(
                         chatRoomId, request.getCursor(), userId,
                         PageRequest.of(0, request.getLimit() + 1));
                 
@@ -231,9 +270,8 @@ public class ChatServiceImpl implements ChatService {
             }
         }
 
-        List<MessageDTO> messageDTOs = messages.stream()
-                .map(chatMapper::toMessageDTO)
-                .toList();
+        List<MessageDTO> messageDTOs = chatMapper.toTimelineDTOList(messages,
+                chatReadWatermarkRepository.findByChatRoomId(chatRoomId));
 
         return CursorPaginationResponse.<MessageDTO>builder()
                 .data(messageDTOs)
@@ -254,13 +292,21 @@ public class ChatServiceImpl implements ChatService {
             throw new ApiException(HttpStatus.FORBIDDEN, "Access denied to this chat room");
         }
 
-        messageRepository.markMessagesAsRead(chatRoomId, userId, LocalDateTime.now());
-        sendReadReceipt(chatRoomId, userId);
+        // Chỉ ghi một dòng mốc đã đọc thay vì cập nhật từng tin nhắn; không gửi receipt nếu không có gì mới
+        if (chatReadWatermarkRepository.advanceToLatestMessage(chatRoomId, userId, LocalDateTime.now()) > 0) {
+            sendReadReceipt(chatRoomId, userId);
+        }
+        unreadCounterStore.roomRead(chatRoomId, userId);
     }
 
     @Override
     public Long getUnreadMessageCount(Long chatRoomId, Long userId) {
-        return messageRepository.countUnreadMessagesByChatRoomIdAndUserId(chatRoomId, userId);
+        return unreadCounterStore.getRoomUnread(userId, chatRoomId);
+    }
+
+    @Override
+    public Long getTotalUnreadMessageCount(Long userId) {
+        return unreadCounterStore.getTotalUnread(userId);
     }
 
     @Override
@@ -279,11 +325,124 @@ public class ChatServiceImpl implements ChatService {
         message.setRecalled(true);
         message.setRecalledAt(LocalDateTime.now());
         messageRepository.save(message);
+        unreadCounterStore.refreshRoom(message.getChatRoom().getId(), otherParticipantId(message.getChatRoom(), userId));
 
         // Send WebSocket notification to all users in the chat room
         sendMessageRecalledNotification(message.getChatRoom().getId(), messageId, userId);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ChatSyncResponse syncChanges(Long userId, LocalDateTime since) {
+        if (since == null) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "since is required", "INVALID_SYNC_WATERMARK");
+        }
+        LocalDateTime syncedAt = LocalDateTime.now();
+        // Lùi mốc một chút: transaction commit chậm hơn created_at vẫn được gửi lại, client bỏ trùng theo id
+        LocalDateTime effectiveSince = since.minusSeconds(SYNC_OVERLAP_SECONDS);
+
+        List<ChatRoomDTO> rooms = chatRoomRepository.findChangedSince(userId, effectiveSince).stream()
+                .map(chatRoom -> {
+                    ChatRoomDTO room = chatMapper.toChatRoomDTO(chatRoom);
+                    room.setUnreadCount(unreadCounterStore.getRoomUnread(userId, chatRoom.getId()));
+                    return room;
+                })
+                .collect(Collectors.toList());
+
+        List<MessageTimelineProjection> messages = messageRepository.findSyncMessages(userId, effectiveSince,
+                PageRequest.of(0, MAX_SYNC_MESSAGES + 1));
+        boolean truncated = messages.size() > MAX_SYNC_MESSAGES;
+        if (truncated) {
+            messages = messages.subList(0, MAX_SYNC_MESSAGES);
+        }
+        Set<Long> chatRoomIds = messages.stream()
+                .map(MessageTimelineProjection::getChatRoomId)
+                .collect(Collectors.toSet());
+        Map<Long, List<ChatReadWatermark>> watermarksByRoom = chatRoomIds.isEmpty()
+                ? Map.of()
+                : chatReadWatermarkRepository.findByChatRoomIdIn(chatRoomIds).stream()
+                        .collect(Collectors.groupingBy(ChatReadWatermark::getChatRoomId));
+        List<MessageDTO> messageDTOs = messages.stream()
+                .map(row -> chatMapper.toMessageDTO(row, watermarksByRoom.getOrDefault(row.getChatRoomId(), List.of())))
+                .collect(Collectors.toList());
+
+        List<ChatSyncResponse.RecalledMessage> recalledMessages = messageRepository.findRecalledSince(userId, effectiveSince)
+                .stream()
+                .map(row -> ChatSyncResponse.RecalledMessage.builder()
+                        .messageId(row.getId())
+                        .chatRoomId(row.getChatRoomId())
+                        .recalledAt(row.getRecalledAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        List<ChatSyncResponse.ReadReceipt> readReceipts = chatReadWatermarkRepository.findReadSince(userId, effectiveSince)
+                .stream()
+                .map(watermark -> ChatSyncResponse.ReadReceipt.builder()
+                        .chatRoomId(watermark.getChatRoomId())
+                        .userId(watermark.getUserId())
+                        .lastReadMessageId(watermark.getLastReadMessageId())
+                        .readAt(watermark.getReadAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        return ChatSyncResponse.builder()
+                .syncedAt(syncedAt)
+                .truncated(truncated)
+                .rooms(rooms)
+                .messages(messageDTOs)
+                .recalledMessages(recalledMessages)
+                .readReceipts(readReceipts)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPaginationResponse<MessageDTO> searchMessages(Long userId, String query, Long chatRoomId,
+                                                               CursorPaginationRequest request) {
+        String normalizedQuery = query != null ? query.strip() : "";
+        if (normalizedQuery.isEmpty() || normalizedQuery.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "Search query must be 1-" + MAX_SEARCH_QUERY_LENGTH + " characters", "INVALID_SEARCH_QUERY");
+        }
+        if (chatRoomId != null && !chatRoomMembershipCache.isMember(chatRoomId, userId)) {
+            throw new ApiException(HttpStatus.FORBIDDEN, "Access denied to this chat room");
+        }
+
+        int limit = Math.min(Math.max(request.getLimit() != null ? request.getLimit() : 20, 1), MAX_SEARCH_LIMIT);
+        // Keyset: chỉ lấy tin nhắn cũ hơn cursor, không OFFSET
+        long beforeId = request.getCursor() != null ? request.getCursor() : Long.MAX_VALUE;
+        List<Message> hits = chatRoomId != null
+                ? messageRepository.searchVisibleMessagesInChatRoom(chatRoomId, userId, normalizedQuery, beforeId, limit + 1)
+                : messageRepository.searchVisibleMessages(userId, normalizedQuery, beforeId, limit + 1);
+
+        boolean hasNext = hits.size() > limit;
+        if (hasNext) {
+            hits = hits.subList(0, limit);
+        }
+
+        // Kết quả có thể thuộc nhiều phòng: lấy mốc đã đọc của các phòng đó trong một truy vấn
+        Set<Long> chatRoomIds = hits.stream()
+                .map(message -> message.getChatRoom().getId())
+                .collect(Collectors.toSet());
+        Map<Long, List<ChatReadWatermark>> watermarksByRoom = chatRoomIds.isEmpty()
+                ? Map.of()
+                : chatReadWatermarkRepository.findByChatRoomIdIn(chatRoomIds).stream()
+                        .collect(Collectors.groupingBy(ChatReadWatermark::getChatRoomId));
+        List<MessageDTO> messageDTOs = hits.stream()
+                .map(message -> chatMapper.toMessageDTO(message,
+                        watermarksByRoom.getOrDefault(message.getChatRoom().getId(), List.of())))
+                .collect(Collectors.toList());
+
+        return CursorPaginationResponse.<MessageDTO>builder()
+                .data(messageDTOs)
+                .nextCursor(hits.isEmpty() ? null : hits.get(hits.size() - 1).getId())
+                .previousCursor(request.getCursor())
+                .hasNext(hasNext)
+                .hasPrevious(request.getCursor() != null)
+                .totalCount(messageDTOs.size())
+                .build();
+    }
+
     @Override
     public void sendMessageRecalledNotification(Long chatRoomId, Long messageId, Long senderId) {
         WebSocketChatMessage wsMessage = WebSocketChatMessage.builder()
@@ -305,6 +464,7 @@ public class ChatServiceImpl implements ChatService {
                 .type("MESSAGE")
                 .chatRoomId(chatRoomId)
                 .messageId(message.getId())
+                .sequence(message.getSequence())
                 .senderId(message.getSenderId())
                 .senderName(message.getSenderName())
                 .senderAvatar(message.getSenderAvatar())
@@ -321,23 +481,23 @@ public class ChatServiceImpl implements ChatService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void sendTypingIndicator(Long chatRoomId, Long senderId, boolean isTyping) {
-        WebSocketChatMessage wsMessage = WebSocketChatMessage.builder()
-                .type("TYPING")
-                .chatRoomId(chatRoomId)
-                .senderId(senderId)
-                .content(isTyping ? "true" : "false")
-                .timestamp(LocalDateTime.now())
-                .build();
-        log("Send typing");
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId, wsMessage);
+        // Trạng thái gõ chỉ nằm trong bộ nhớ, gom và phát theo chu kỳ (xem TypingStateEngine)
+        typingStateEngine.onTyping(chatRoomId, senderId, isTyping);
     }
 
     @Override
     public void sendReadReceipt(Long chatRoomId, Long userId) {
+        // messageId = mốc đã đọc: mọi tin nhắn có id <= messageId đã được userId đọc
+        Long lastReadMessageId = chatReadWatermarkRepository
+                .findById(new ChatReadWatermark.ChatReadWatermarkId(chatRoomId, userId))
+                .map(ChatReadWatermark::getLastReadMessageId)
+                .orElse(null);
         WebSocketChatMessage wsMessage = WebSocketChatMessage.builder()
                 .type("READ_RECEIPT")
                 .chatRoomId(chatRoomId)
+                .messageId(lastReadMessageId)
                 .senderId(userId)
                 .content("read")
                 .timestamp(LocalDateTime.now())
@@ -359,4 +519,31 @@ public class ChatServiceImpl implements ChatService {
         
         return imageUrl;
     }
-} 
\ No newline at end of file
+
+    private MessageDTO awaitSequenced(CompletableFuture<MessageDTO> sequenced) {
+        try {
+            try {
+                return sequenced.get(messageSequencer.getSendTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (sequenced.cancel(false)) {
+                    // Tin nhắn đã được gỡ khỏi hàng đợi, không bao giờ được ghi: gửi lại không tạo bản trùng
+                    throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Message sending timed out", "SEND_TIMEOUT");
+                }
+                // Tin nhắn đã nằm trong lô đang ghi: chờ kết quả, giới hạn bởi thời hạn transaction của sequencer
+                return sequenced.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sequenced.cancel(false);
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Message sending was interrupted", "SEND_INTERRUPTED");
+        } catch (ExecutionException e) {
+            log.error("Failed to send message: {}", e.getCause().getMessage());
+            throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to send message", "SEND_FAILED");
+        }
+    }
+
+    // Phòng chat 1-1: người còn lại trong phòng
+    private Long otherParticipantId(ChatRoom chatRoom, Long userId) {
+        return chatRoom.getUser1().getId().equals(userId) ? chatRoom.getUser2().getId() : chatRoom.getUser1().getId();
+    }
+}
@@ -0,0 +1,253 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.domain.Message;
+import com.amoura.module.chat.dto.MessageDTO;
+import com.amoura.module.chat.mapper.ChatMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ghi tin nhắn theo từng phòng với một luồng ghi duy nhất mỗi phòng tại một thời điểm.
+ * <ul>
+ *   <li>Tin nhắn gửi vào cùng phòng được xếp hàng và ghi theo lô trong một transaction:
+ *       một câu UPDATE chat_rooms (cấp số thứ tự + updated_at) và một câu INSERT nhiều dòng</li>
+ *   <li>Số thứ tự {@code room_seq} tăng liên tục trong phòng, được cấp từ {@code chat_rooms.last_message_seq}</li>
+ *   <li>Sau khi commit, tin nhắn được phát theo đúng thứ tự số thứ tự, rồi mới trả kết quả cho người gửi</li>
+ *   <li>Các phòng khác nhau được ghi song song trên {@code threads} luồng; phòng bận không giữ luồng quá một lô</li>
+ *   <li>Future trả về chỉ huỷ được khi tin nhắn còn trong hàng đợi: tin nhắn bị huỷ không bao giờ được ghi,
+ *       nên người gửi có thể gửi lại mà không tạo bản trùng</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class MessageSequencer {
+
+    private static final String ALLOCATE_SEQ_SQL =
+            "UPDATE chat_rooms SET last_message_seq = last_message_seq + ?, updated_at = ? WHERE id = ? " +
+            "RETURNING last_message_seq";
+    private static final String INSERT_PREFIX =
+            "INSERT INTO messages (chat_room_id, sender_id, content, message_type, is_read, created_at, " +
+            "image_url, image_uploader_id, recalled, room_seq) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, false, ?, ?, ?, false, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatMapper chatMapper;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final ExecutorService writers;
+
+    private final Map<Long, RoomQueue> queues = new ConcurrentHashMap<>();
+
+    public MessageSequencer(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ChatMapper chatMapper,
+                            @Value("${app.chat.sequencer.threads:4}") int threads,
+                            @Value("${app.chat.sequencer.batch-size:100}") int batchSize,
+                            @Value("${app.chat.sequencer.write-timeout-seconds:5}") int writeTimeoutSeconds,
+                            @Value("${app.chat.sequencer.send-timeout-ms:10000}") long sendTimeoutMs) {
+        // Người gửi phải chờ lâu hơn một lô, nếu không sẽ nhận 503 trong khi lô vẫn có thể commit
+        if (sendTimeoutMs <= writeTimeoutSeconds * 1000L) {
+            throw new IllegalStateException("app.chat.sequencer.send-timeout-ms (" + sendTimeoutMs
+                    + ") must exceed app.chat.sequencer.write-timeout-seconds (" + writeTimeoutSeconds + "s)");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Giới hạn thời gian một lô, để người gửi đang chờ lô đó không bị treo vô hạn
+        this.transactionTemplate.setTimeout(writeTimeoutSeconds);
+        this.chatMapper = chatMapper;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "message-sequencer-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Thời gian người gửi chờ tin nhắn được ghi trước khi thử huỷ ({@code app.chat.sequencer.send-timeout-ms}).
+     */
+    public long getSendTimeoutMs() {
+        return sendTimeoutMs;
+    }
+
+    /**
+     * Xếp tin nhắn vào hàng đợi của phòng. {@code publisher} được gọi sau khi commit, theo thứ tự số thứ tự trong phòng;
+     * future hoàn tất với DTO đã phát (có id và số thứ tự). {@code cancel} trả về true nếu tin nhắn được gỡ khỏi hàng đợi
+     * trước khi ghi, false nếu nó đã nằm trong lô đang ghi (kết quả vẫn sẽ đến).
+     */
+    public CompletableFuture<MessageDTO> submit(Message message, Consumer<MessageDTO> publisher) {
+        Long chatRoomId = message.getChatRoom().getId();
+        PendingMessage pending = new PendingMessage(message, publisher);
+        while (true) {
+            RoomQueue queue = queues.computeIfAbsent(chatRoomId, id -> new RoomQueue());
+            boolean schedule;
+            synchronized (queue) {
+                // Hàng đợi vừa bị gỡ khỏi map: lấy hàng đợi mới để không có hai luồng ghi cho cùng phòng
+                if (queue.removed) {
+                    continue;
+                }
+                queue.pending.add(pending);
+                schedule = !queue.scheduled;
+                queue.scheduled = true;
+            }
+            if (schedule) {
+                writers.execute(() -> drain(chatRoomId, queue));
+            }
+            return pending.future;
+        }
+    }
+
+    int pendingRooms() {
+        return queues.size();
+    }
+
+    private void drain(Long chatRoomId, RoomQueue queue) {
+        List<PendingMessage> batch = new ArrayList<>();
+        synchronized (queue) {
+            while (batch.size() < batchSize && !queue.pending.isEmpty()) {
+                PendingMessage pending = queue.pending.poll();
+                // Người gửi đã bỏ cuộc trước khi tin nhắn được ghi: bỏ qua
+                if (pending.future.claim()) {
+                    batch.add(pending);
+                }
+            }
+        }
+
+        try {
+            if (!batch.isEmpty()) {
+                writeBatch(chatRoomId, batch);
+            }
+            for (PendingMessage pending : batch) {
+                MessageDTO messageDTO = chatMapper.toMessageDTO(pending.message);
+                try {
+                    pending.publisher.accept(messageDTO);
+                } catch (Exception e) {
+                    log.error("Failed to publish message {} of chat room {}: {}", messageDTO.getId(), chatRoomId, e.getMessage());
+                }
+                pending.future.complete(messageDTO);
+            }
+        } catch (Exception e) {
+            log.error("Failed to write {} message(s) to chat room {}: {}", batch.size(), chatRoomId, e.getMessage());
+            for (PendingMessage pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+
+        boolean more;
+        synchronized (queue) {
+            more = !queue.pending.isEmpty();
+            if (!more) {
+                queue.scheduled = false;
+                queue.removed = true;
+                queues.remove(chatRoomId, queue);
+            }
+        }
+        if (more) {
+            // Nhường luồng cho phòng khác thay vì ghi liên tục một phòng bận
+            writers.execute(() -> drain(chatRoomId, queue));
+        }
+    }
+
+    private void writeBatch(Long chatRoomId, List<PendingMessage> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp createdAt = Timestamp.valueOf(now);
+        transactionTemplate.executeWithoutResult(status -> {
+            Long lastSeq = jdbcTemplate.queryForObject(ALLOCATE_SEQ_SQL, Long.class, batch.size(), createdAt, chatRoomId);
+            if (lastSeq == null) {
+                throw new IllegalStateException("Chat room " + chatRoomId + " not found");
+            }
+            long firstSeq = lastSeq - batch.size() + 1;
+
+            StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+            List<Object> params = new ArrayList<>(batch.size() * 8);
+            for (int i = 0; i < batch.size(); i++) {
+                Message message = batch.get(i).message;
+                message.setRoomSeq(firstSeq + i);
+                message.setCreatedAt(now);
+                sql.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+                params.add(chatRoomId);
+                params.add(message.getSender().getId());
+                params.add(message.getContent());
+                params.add(message.getMessageType().name());
+                params.add(createdAt);
+                params.add(message.getImageUrl());
+                params.add(message.getImageUploaderId());
+                params.add(message.getRoomSeq());
+            }
+            sql.append(" RETURNING id, room_seq");
+
+            Map<Long, Long> idsBySeq = new HashMap<>();
+            jdbcTemplate.query(sql.toString(), rs -> {
+                idsBySeq.put(rs.getLong("room_seq"), rs.getLong("id"));
+            }, params.toArray());
+            for (PendingMessage pending : batch) {
+                pending.message.setId(idsBySeq.get(pending.message.getRoomSeq()));
+            }
+        });
+    }
+
+    private static class RoomQueue {
+        final ArrayDeque<PendingMessage> pending = new ArrayDeque<>();
+        boolean scheduled;
+        boolean removed;
+    }
+
+    private static class PendingMessage {
+        final Message message;
+        final Consumer<MessageDTO> publisher;
+        final SequencedFuture future = new SequencedFuture();
+
+        PendingMessage(Message message, Consumer<MessageDTO> publisher) {
+            this.message = message;
+            this.publisher = publisher;
+        }
+    }
+
+    private static class SequencedFuture extends CompletableFuture<MessageDTO> {
+        private static final int QUEUED = 0;
+        private static final int WRITING = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        // Luồng ghi nhận tin nhắn vào lô; thất bại nếu người gửi đã huỷ
+        boolean claim() {
+            return state.compareAndSet(QUEUED, WRITING);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return state.compareAndSet(QUEUED, CANCELLED) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
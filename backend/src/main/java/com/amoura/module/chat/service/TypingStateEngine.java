@@ -0,0 +1,165 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.dto.WebSocketChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trạng thái "đang gõ" theo (phòng, người dùng), giữ hoàn toàn trong bộ nhớ, không đụng tới database.
+ * <ul>
+ *   <li>Bắt đầu gõ: phát TYPING=true ngay; các sự kiện gõ tiếp theo chỉ phát lại tối đa một lần mỗi {@code intervalMs}</li>
+ *   <li>Dừng gõ: phát TYPING=false một lần, bỏ qua nếu người dùng không ở trạng thái đang gõ</li>
+ *   <li>Không nhận sự kiện nào trong {@code expiryMs}: tự phát TYPING=false (client mất kết nối, quên gửi stop)</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class TypingStateEngine {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long intervalMs;
+    private final long expiryMs;
+
+    private final Map<TypingKey, TypingState> states = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    public TypingStateEngine(SimpMessagingTemplate messagingTemplate,
+                             @Value("${app.chat.typing.interval-ms:3000}") long intervalMs,
+                             @Value("${app.chat.typing.expiry-ms:6000}") long expiryMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.intervalMs = intervalMs;
+        this.expiryMs = expiryMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(100, expiryMs / 2);
+        sweeper.scheduleWithFixedDelay(this::expireSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    public void onTyping(Long chatRoomId, Long userId, boolean typing) {
+        onTyping(chatRoomId, userId, typing, System.currentTimeMillis());
+    }
+
+    void onTyping(Long chatRoomId, Long userId, boolean typing, long now) {
+        TypingKey key = new TypingKey(chatRoomId, userId);
+        if (!typing) {
+            TypingState removed = states.remove(key);
+            if (removed != null) {
+                broadcast(chatRoomId, userId, false);
+            }
+            return;
+        }
+
+        TypingState state = states.computeIfAbsent(key, k -> new TypingState());
+        boolean emit;
+        synchronized (state) {
+            state.lastSeenAt = now;
+            emit = state.lastEmittedAt == 0L || now - state.lastEmittedAt >= intervalMs;
+            if (emit) {
+                state.lastEmittedAt = now;
+            }
+        }
+        if (emit) {
+            broadcast(chatRoomId, userId, true);
+        }
+    }
+
+    /**
+     * Phát TYPING=false cho những người dùng không gửi sự kiện nào trong {@code expiryMs}.
+     */
+    int expireIdle(long now) {
+        int expired = 0;
+        for (Map.Entry<TypingKey, TypingState> entry : states.entrySet()) {
+            TypingState state = entry.getValue();
+            boolean idle;
+            synchronized (state) {
+                idle = now - state.lastSeenAt >= expiryMs;
+            }
+            // remove(key, value) để không xoá nhầm trạng thái vừa được tạo lại
+            if (idle && states.remove(entry.getKey(), state)) {
+                broadcast(entry.getKey().chatRoomId, entry.getKey().userId, false);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    int activeCount() {
+        return states.size();
+    }
+
+    private void expireSafely() {
+        try {
+            expireIdle(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("Failed to expire typing states: {}", e.getMessage());
+        }
+    }
+
+    private void broadcast(Long chatRoomId, Long userId, boolean typing) {
+        WebSocketChatMessage wsMessage = WebSocketChatMessage.builder()
+                .type("TYPING")
+                .chatRoomId(chatRoomId)
+                .senderId(userId)
+                .content(typing ? "true" : "false")
+                .timestamp(LocalDateTime.now())
+                .build();
+        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId, wsMessage);
+    }
+
+    private static final class TypingState {
+        private long lastSeenAt;
+        private long lastEmittedAt;
+    }
+
+    private static final class TypingKey {
+        private final Long chatRoomId;
+        private final Long userId;
+
+        private TypingKey(Long chatRoomId, Long userId) {
+            this.chatRoomId = chatRoomId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TypingKey other)) {
+                return false;
+            }
+            return chatRoomId.equals(other.chatRoomId) && userId.equals(other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chatRoomId, userId);
+        }
+    }
+}
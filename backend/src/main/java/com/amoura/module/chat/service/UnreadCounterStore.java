@@ -0,0 +1,296 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.repository.ChatRoomUnreadProjection;
+import com.amoura.module.chat.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bộ đếm tin nhắn chưa đọc theo (phòng, người nhận) và tổng theo user, giữ trong bộ nhớ.
+ * <ul>
+ *   <li>Nạp từ database ở lần đọc đầu tiên của user, sau đó cập nhật tăng dần khi gửi / đọc / thu hồi / xoá phía mình</li>
+ *   <li>Khoá theo stripe của userId: các user khác nhau không tranh chấp nhau</li>
+ *   <li>Định kỳ đối chiếu lại với database theo từng lô user (sửa sai lệch do race giữa lúc nạp và lúc cập nhật),
+ *       user không được truy cập trong {@code idleEvictMs} bị bỏ khỏi bộ nhớ</li>
+ *   <li>Mỗi lần số đếm của một phòng thay đổi, gửi {@code /user/queue/unread} cho user đó</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class UnreadCounterStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final MessageRepository messageRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long reconcileIntervalMs;
+    private final int reconcileBatchSize;
+    private final long idleEvictMs;
+
+    private final Map<Long, UserCounters> countersByUser = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private int reconcileOffset;
+    private ScheduledExecutorService reconciler;
+
+    public UnreadCounterStore(MessageRepository messageRepository,
+                              SimpMessagingTemplate messagingTemplate,
+                              @Value("${app.chat.unread.reconcile-interval-ms:60000}") long reconcileIntervalMs,
+                              @Value("${app.chat.unread.reconcile-batch-size:500}") int reconcileBatchSize,
+                              @Value("${app.chat.unread.idle-evict-ms:1800000}") long idleEvictMs) {
+        this.messageRepository = messageRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.idleEvictMs = idleEvictMs;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "unread-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileSafely,
+                reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
+    public long getRoomUnread(Long userId, Long chatRoomId) {
+        UserCounters counters = load(userId);
+        synchronized (lockFor(userId)) {
+            return counters.rooms.getOrDefault(chatRoomId, 0L);
+        }
+    }
+
+    public long getTotalUnread(Long userId) {
+        UserCounters counters = load(userId);
+        synchronized (lockFor(userId)) {
+            return counters.total;
+        }
+    }
+
+    /**
+     * Tin nhắn mới cho người nhận. User chưa được nạp thì bỏ qua: lần nạp sau sẽ đếm từ database.
+     */
+    public void messageSent(Long chatRoomId, Long recipientId) {
+        afterCommit(() -> {
+            UserCounters counters = countersByUser.get(recipientId);
+            if (counters == null) {
+                return;
+            }
+            long roomUnread;
+            long total;
+            synchronized (lockFor(recipientId)) {
+                roomUnread = counters.rooms.merge(chatRoomId, 1L, Long::sum);
+                total = ++counters.total;
+            }
+            push(recipientId, chatRoomId, roomUnread, total);
+        });
+    }
+
+    /**
+     * User đã đọc hết phòng (mốc đã đọc nằm ở tin nhắn mới nhất).
+     */
+    public void roomRead(Long chatRoomId, Long userId) {
+        afterCommit(() -> setRoom(userId, chatRoomId, 0L));
+    }
+
+    /**
+     * Đếm lại một phòng từ database: dùng cho thu hồi / xoá phía mình, khi không biết tin nhắn đó đã được đọc chưa.
+     */
+    public void refreshRoom(Long chatRoomId, Long userId) {
+        afterCommit(() -> {
+            if (countersByUser.containsKey(userId)) {
+                setRoom(userId, chatRoomId, messageRepository.countUnreadMessagesByChatRoomIdAndUserId(chatRoomId, userId));
+            }
+        });
+    }
+
+    /**
+     * Phòng bị vô hiệu hoá: không còn tính vào tổng chưa đọc của cả hai người.
+     */
+    public void roomRemoved(Long chatRoomId, Long... userIds) {
+        afterCommit(() -> {
+            for (Long userId : userIds) {
+                setRoom(userId, chatRoomId, 0L);
+            }
+        });
+    }
+
+    void reconcile(long now) {
+        List<Long> userIds = new ArrayList<>(countersByUser.keySet());
+        if (userIds.isEmpty()) {
+            return;
+        }
+        if (reconcileOffset >= userIds.size()) {
+            reconcileOffset = 0;
+        }
+        int end = Math.min(userIds.size(), reconcileOffset + reconcileBatchSize);
+        for (Long userId : userIds.subList(reconcileOffset, end)) {
+            UserCounters counters = countersByUser.get(userId);
+            if (counters == null) {
+                continue;
+            }
+            if (now - counters.lastAccessMs > idleEvictMs) {
+                countersByUser.remove(userId);
+                continue;
+            }
+            Map<Long, Long> fresh = loadFromDatabase(userId);
+            Map<Long, Long> changed = new HashMap<>();
+            long total;
+            synchronized (lockFor(userId)) {
+                for (Long chatRoomId : counters.rooms.keySet()) {
+                    if (!fresh.containsKey(chatRoomId)) {
+                        changed.put(chatRoomId, 0L);
+                    }
+                }
+                fresh.forEach((chatRoomId, count) -> {
+                    if (!count.equals(counters.rooms.get(chatRoomId))) {
+                        changed.put(chatRoomId, count);
+                    }
+                });
+                counters.rooms.clear();
+                counters.rooms.putAll(fresh);
+                counters.total = sum(fresh);
+                total = counters.total;
+            }
+            if (!changed.isEmpty()) {
+                log.debug("Reconciled unread counters of user {}: {} room(s) drifted", userId, changed.size());
+                changed.forEach((chatRoomId, count) -> push(userId, chatRoomId, count, total));
+            }
+        }
+        reconcileOffset = end;
+    }
+
+    int loadedUsers() {
+        return countersByUser.size();
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("Unread counter reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    private UserCounters load(Long userId) {
+        UserCounters counters = countersByUser.get(userId);
+        if (counters == null) {
+            Map<Long, Long> rooms = loadFromDatabase(userId);
+            UserCounters loaded = new UserCounters();
+            loaded.rooms.putAll(rooms);
+            loaded.total = sum(rooms);
+            counters = countersByUser.putIfAbsent(userId, loaded);
+            if (counters == null) {
+                counters = loaded;
+            }
+        }
+        counters.lastAccessMs = System.currentTimeMillis();
+        return counters;
+    }
+
+    private Map<Long, Long> loadFromDatabase(Long userId) {
+        Map<Long, Long> rooms = new HashMap<>();
+        for (ChatRoomUnreadProjection row : messageRepository.countUnreadMessagesByChatRoomForUser(userId)) {
+            rooms.put(row.getChatRoomId(), row.getUnreadCount());
+        }
+        return rooms;
+    }
+
+    private void setRoom(Long userId, Long chatRoomId, long roomUnread) {
+        UserCounters counters = countersByUser.get(userId);
+        if (counters == null) {
+            return;
+        }
+        long total;
+        synchronized (lockFor(userId)) {
+            Long previous = roomUnread == 0 ? counters.rooms.remove(chatRoomId) : counters.rooms.put(chatRoomId, roomUnread);
+            long before = previous != null ? previous : 0L;
+            if (before == roomUnread) {
+                return;
+            }
+            counters.total += roomUnread - before;
+            total = counters.total;
+        }
+        push(userId, chatRoomId, roomUnread, total);
+    }
+
+    private void push(Long userId, Long chatRoomId, long roomUnread, long total) {
+        try {
+            messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/unread",
+                    new UnreadCountMessage(chatRoomId, roomUnread, total));
+        } catch (Exception e) {
+            log.warn("Failed to push unread count to user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long sum(Map<Long, Long> rooms) {
+        long total = 0;
+        for (long count : rooms.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private Object lockFor(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static class UserCounters {
+        // Chỉ giữ phòng có tin chưa đọc; đọc/ghi dưới khoá stripe của user
+        final Map<Long, Long> rooms = new HashMap<>();
+        long total;
+        volatile long lastAccessMs = System.currentTimeMillis();
+    }
+
+    // DTO cho message số chưa đọc
+    public static class UnreadCountMessage {
+        public Long chatRoomId;
+        public long unreadCount;
+        public long totalUnreadCount;
+        public UnreadCountMessage(Long chatRoomId, long unreadCount, long totalUnreadCount) {
+            this.chatRoomId = chatRoomId;
+            this.unreadCount = unreadCount;
+            this.totalUnreadCount = totalUnreadCount;
+        }
+    }
+}
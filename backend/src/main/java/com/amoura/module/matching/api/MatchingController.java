@@ -1,5 +1,6 @@
 package com.amoura.module.matching.api;
 
+import com.amoura.module.matching.dto.CursorPaginationResponse;
 import com.amoura.module.matching.dto.ReceivedLikeDTO;
 import com.amoura.module.matching.dto.SwipeRequest;
 import com.amoura.module.matching.dto.SwipeResponse;
@@ -34,6 +35,17 @@ public class MatchingController {
         return ResponseEntity.ok(recommendations);
     }
 
+    @GetMapping("/recommendations/nearby")
+    @Operation(summary = "Get the nearest eligible users within a radius")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<List<UserRecommendationDTO>> getNearbyUsers(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "50") Double radiusKm,
+            @RequestParam(defaultValue = "20") Integer limit) {
+        List<UserRecommendationDTO> nearbyUsers = matchingService.getNearbyUsers(getUserEmail(userDetails), radiusKm, limit);
+        return ResponseEntity.ok(nearbyUsers);
+    }
+
     @PostMapping("/swipe")
     @Operation(summary = "Swipe (like/pass) a user")
     @SecurityRequirement(name = "bearerAuth")
@@ -53,6 +65,18 @@ public class MatchingController {
         return ResponseEntity.ok(receivedLikes);
     }
 
+    @GetMapping("/received/page")
+    @Operation(summary = "Get users who have liked the current user with cursor-based pagination")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CursorPaginationResponse<ReceivedLikeDTO>> getReceivedLikesPage(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") Integer limit) {
+        CursorPaginationResponse<ReceivedLikeDTO> receivedLikes =
+                matchingService.getReceivedLikes(getUserEmail(userDetails), cursor, limit);
+        return ResponseEntity.ok(receivedLikes);
+    }
+
     private String getUserEmail(UserDetails userDetails) {
         // CustomUserDetails stores email as username
         return userDetails.getUsername();
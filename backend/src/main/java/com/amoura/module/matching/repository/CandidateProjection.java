@@ -0,0 +1,17 @@
+package com.amoura.module.matching.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Các thuộc tính tối thiểu của một user cần cho việc lọc ứng viên matching
+ */
+public interface CandidateProjection {
+    Long getUserId();
+    String getStatus();
+    String getSex();
+    Long getOrientationId();
+    LocalDate getDateOfBirth();
+    BigDecimal getLatitude();
+    BigDecimal getLongitude();
+}
@@ -0,0 +1,41 @@
+package com.amoura.module.matching.repository;
+
+import com.amoura.module.user.domain.User;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CandidateRepository extends Repository<User, Long> {
+
+    @Query("SELECT u.id AS userId, u.status AS status, p.sex AS sex, o.id AS orientationId, " +
+           "p.dateOfBirth AS dateOfBirth, l.latitudes AS latitude, l.longitudes AS longitude " +
+           "FROM User u LEFT JOIN u.profile p LEFT JOIN p.orientation o LEFT JOIN u.location l")
+    List<CandidateProjection> findAllCandidates();
+
+    @Query("SELECT u.id AS userId, u.status AS status, p.sex AS sex, o.id AS orientationId, " +
+           "p.dateOfBirth AS dateOfBirth, l.latitudes AS latitude, l.longitudes AS longitude " +
+           "FROM User u LEFT JOIN u.profile p LEFT JOIN p.orientation o LEFT JOIN u.location l " +
+           "WHERE u.id = :userId")
+    Optional<CandidateProjection> findCandidateById(@Param("userId") Long userId);
+
+    @Query("SELECT u.id AS userId, u.username AS username, u.firstName AS firstName, u.lastName AS lastName " +
+           "FROM User u WHERE u.id IN :userIds")
+    List<CardUserProjection> findCardUsersByIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Query(value = "SELECT l.user_id FROM locations l JOIN users u ON u.id = l.user_id " +
+                   "WHERE l.geog IS NOT NULL AND l.user_id <> :userId AND LOWER(u.status) = 'active' " +
+                   "AND ST_DWithin(l.geog, ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography, :radiusMeters) " +
+                   "AND NOT EXISTS (SELECT 1 FROM swipes s WHERE s.initiator = :userId AND s.target_user = l.user_id) " +
+                   "ORDER BY l.geog <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography " +
+                   "OFFSET :offset LIMIT :limit", nativeQuery = true)
+    List<Long> findNearestCandidateIds(@Param("userId") Long userId,
+                                       @Param("latitude") double latitude,
+                                       @Param("longitude") double longitude,
+                                       @Param("radiusMeters") double radiusMeters,
+                                       @Param("offset") int offset,
+                                       @Param("limit") int limit);
+}
@@ -0,0 +1,12 @@
+package com.amoura.module.matching.repository;
+
+/**
+ * Các cột của bảng users cần cho thẻ hồ sơ; đọc qua projection để không dựng entity User
+ * (kéo theo truy vấn profile / location của quan hệ một-một phía mappedBy)
+ */
+public interface CardUserProjection {
+    Long getUserId();
+    String getUsername();
+    String getFirstName();
+    String getLastName();
+}
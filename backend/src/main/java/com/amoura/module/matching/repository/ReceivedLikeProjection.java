@@ -0,0 +1,12 @@
+package com.amoura.module.matching.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một lượt like nhận được: id swipe (dùng làm cursor), người like và thời điểm like
+ */
+public interface ReceivedLikeProjection {
+    Long getId();
+    Long getInitiatorId();
+    LocalDateTime getCreatedAt();
+}
@@ -1,6 +1,7 @@
 package com.amoura.module.matching.repository;
 
 import com.amoura.module.matching.domain.Swipe;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -22,6 +23,12 @@ public interface SwipeRepository extends JpaRepository<Swipe, Long> {
     @Query("SELECT s FROM Swipe s WHERE s.initiator.id = :userId")
     List<Swipe> findByInitiatorId(@Param("userId") Long userId);
     
+    @Query("SELECT s.targetUser.id FROM Swipe s WHERE s.initiator.id = :userId")
+    List<Long> findTargetUserIdsByInitiatorId(@Param("userId") Long userId);
+    
+    @Query("SELECT s.initiator.id FROM Swipe s WHERE s.targetUser.id = :targetUserId AND s.isLike = true")
+    List<Long> findLikerIdsByTargetUserId(@Param("targetUserId") Long targetUserId);
+    
     @Query("SELECT s FROM Swipe s WHERE s.targetUser.id = :userId")
     List<Swipe> findByTargetUserId(@Param("userId") Long userId);
     
@@ -32,8 +39,26 @@ public interface SwipeRepository extends JpaRepository<Swipe, Long> {
     @Query("SELECT s FROM Swipe s WHERE s.targetUser.id = :targetUserId AND s.isLike = true ORDER BY s.createdAt ASC")
     List<Swipe> findLikesReceivedByUser(@Param("targetUserId") Long targetUserId);
     
-    @Query("SELECT s FROM Swipe s WHERE s.targetUser.id = :targetUserId AND s.isLike = true " +
+    @Query("SELECT s.id AS id, s.initiator.id AS initiatorId, s.createdAt AS createdAt FROM Swipe s " +
+           "WHERE s.targetUser.id = :targetUserId AND s.isLike = true " +
            "AND NOT EXISTS (SELECT s2 FROM Swipe s2 WHERE s2.initiator.id = :targetUserId AND s2.targetUser.id = s.initiator.id) " +
            "ORDER BY s.createdAt DESC")
-    List<Swipe> findPendingLikesReceivedByUser(@Param("targetUserId") Long targetUserId);
-} 
\ No newline at end of file
+    List<ReceivedLikeProjection> findPendingLikesReceivedByUser(@Param("targetUserId") Long targetUserId);
+    
+    // Keyset theo (createdAt, id) giảm dần; cursor là id của swipe cuối trang trước
+    @Query("SELECT s.id AS id, s.initiator.id AS initiatorId, s.createdAt AS createdAt FROM Swipe s " +
+           "WHERE s.targetUser.id = :targetUserId AND s.isLike = true " +
+           "AND NOT EXISTS (SELECT s2 FROM Swipe s2 WHERE s2.initiator.id = :targetUserId AND s2.targetUser.id = s.initiator.id) " +
+           "ORDER BY s.createdAt DESC, s.id DESC")
+    List<ReceivedLikeProjection> findPendingLikesReceivedByUser(@Param("targetUserId") Long targetUserId, Pageable pageable);
+    
+    @Query("SELECT s.id AS id, s.initiator.id AS initiatorId, s.createdAt AS createdAt FROM Swipe s " +
+           "WHERE s.targetUser.id = :targetUserId AND s.isLike = true " +
+           "AND NOT EXISTS (SELECT s2 FROM Swipe s2 WHERE s2.initiator.id = :targetUserId AND s2.targetUser.id = s.initiator.id) " +
+           "AND (s.createdAt < (SELECT c.createdAt FROM Swipe c WHERE c.id = :cursor) " +
+           "OR (s.createdAt = (SELECT c.createdAt FROM Swipe c WHERE c.id = :cursor) AND s.id < :cursor)) " +
+           "ORDER BY s.createdAt DESC, s.id DESC")
+    List<ReceivedLikeProjection> findPendingLikesReceivedByUserBefore(@Param("targetUserId") Long targetUserId,
+                                                                      @Param("cursor") Long cursor,
+                                                                      Pageable pageable);
+}
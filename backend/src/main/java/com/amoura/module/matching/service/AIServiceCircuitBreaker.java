@@ -0,0 +1,77 @@
+package com.amoura.module.matching.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker cho AI service, theo dõi sức khoẻ dựa trên kết quả của các lời gọi thật
+ * thay vì gọi /health trước mỗi request.
+ * <ul>
+ *   <li>CLOSED: cho phép gọi; mở mạch sau {@code failureThreshold} lỗi liên tiếp</li>
+ *   <li>OPEN: từ chối ngay trong {@code openDurationMs}</li>
+ *   <li>HALF_OPEN: cho đúng một lời gọi thử; thành công thì đóng mạch, lỗi thì mở lại</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class AIServiceCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean(false);
+    private volatile long openedAt = 0L;
+    private volatile boolean open = false;
+
+    public AIServiceCircuitBreaker(@Value("${ai.service.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                   @Value("${ai.service.circuit-breaker.open-duration-ms:30000}") long openDurationMs) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    public boolean allowRequest() {
+        if (!open) {
+            return true;
+        }
+        if (System.currentTimeMillis() - openedAt < openDurationMs) {
+            return false;
+        }
+        // Hết thời gian mở mạch: chỉ một luồng được gửi lời gọi thử
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        trialInFlight.set(false);
+        if (open) {
+            open = false;
+            log.info("AI service circuit closed");
+        }
+    }
+
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        boolean wasTrial = trialInFlight.getAndSet(false);
+        if (wasTrial || failures >= failureThreshold) {
+            if (!open || wasTrial) {
+                log.warn("AI service circuit opened after {} consecutive failures", failures);
+            }
+            openedAt = System.currentTimeMillis();
+            open = true;
+        }
+    }
+
+    public State getState() {
+        if (!open) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() - openedAt < openDurationMs ? State.OPEN : State.HALF_OPEN;
+    }
+}
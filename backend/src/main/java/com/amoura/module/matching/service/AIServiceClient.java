@@ -5,8 +5,8 @@ import com.amoura.module.chat.dto.AIEditMessageRequest;
 import com.amoura.module.chat.dto.AIEditMessageResponse;
 import com.amoura.module.chat.dto.AIMessageEditApiRequest;
 import com.amoura.module.chat.dto.AIMessageEditApiResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -23,18 +23,40 @@ import org.springframework.web.client.HttpServerErrorException;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Gọi AI service qua pool kết nối chung. Mỗi loại lời gọi có RestTemplate riêng với thời hạn riêng
+ * ({@code ai.service.deadline-ms} cho gợi ý, {@code ai.service.edit-deadline-ms} cho sửa tin nhắn):
+ * đây là tổng thời hạn của cả lời gọi, quá hạn thì request bị huỷ, lời gọi rơi về fallback và được tính là lỗi
+ * cho circuit breaker.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AIServiceClient {
 
     private final RestTemplate restTemplate;
+    private final RestTemplate editRestTemplate;
+    private final AIServiceCircuitBreaker circuitBreaker;
+
+    public AIServiceClient(RestTemplate restTemplate,
+                           @Qualifier("aiEditRestTemplate") RestTemplate editRestTemplate,
+                           AIServiceCircuitBreaker circuitBreaker) {
+        this.restTemplate = restTemplate;
+        this.editRestTemplate = editRestTemplate;
+        this.circuitBreaker = circuitBreaker;
+    }
 
     @Value("${ai.service.base-url}")
     private String aiServiceBaseUrl;
 
-
     public List<Long> getPotentialMatches(Long userId, int limit) {
+        if (!circuitBreaker.allowRequest()) {
+            log.debug("AI service circuit is open, skipping potential matches for user {}", userId);
+            return Collections.emptyList();
+        }
+        return fetchPotentialMatches(userId, limit);
+    }
+
+    private List<Long> fetchPotentialMatches(Long userId, int limit) {
         try {
             log.info("Calling AI service for user {} with limit {}", userId, limit);
             
@@ -42,6 +64,7 @@ public class AIServiceClient {
                     aiServiceBaseUrl, userId, limit);
             
             AIPotentialMatchResponse response = restTemplate.getForObject(url, AIPotentialMatchResponse.class);
+            circuitBreaker.recordSuccess();
             
             if (response != null && response.getPotentialMatchIds() != null) {
                 log.info("AI service returned {} potential matches for user {}", 
@@ -53,6 +76,8 @@ public class AIServiceClient {
             }
             
         } catch (HttpClientErrorException e) {
+            // Lỗi 4xx nghĩa là service vẫn đang phản hồi, không tính vào circuit breaker
+            circuitBreaker.recordSuccess();
             if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
                 log.warn("User {} not found in AI service", userId);
             } else {
@@ -64,20 +89,27 @@ public class AIServiceClient {
         } catch (HttpServerErrorException e) {
             log.error("HTTP server error calling AI service for user {}: {} - {}", 
                     userId, e.getStatusCode(), e.getMessage());
+            circuitBreaker.recordFailure();
             return Collections.emptyList();
             
         } catch (ResourceAccessException e) {
             log.error("Connection error calling AI service for user {}: {}", userId, e.getMessage());
+            circuitBreaker.recordFailure();
             return Collections.emptyList();
             
         } catch (Exception e) {
             log.error("Unexpected error calling AI service for user {}: {}", userId, e.getMessage(), e);
+            circuitBreaker.recordFailure();
             return Collections.emptyList();
         }
     }
 
 
     public AIEditMessageResponse editMessage(AIEditMessageRequest request, Long senderId) {
+        if (!circuitBreaker.allowRequest()) {
+            log.warn("AI service circuit is open, returning original message");
+            return createFallbackResponse(request.getOriginalMessage());
+        }
         try {
             
             // Prepare request body for AI service
@@ -96,12 +128,13 @@ public class AIServiceClient {
             
             String url = aiServiceBaseUrl + "/api/v1/messages/edit";
             
-            ResponseEntity<AIMessageEditApiResponse> response = restTemplate.exchange(
+            ResponseEntity<AIMessageEditApiResponse> response = editRestTemplate.exchange(
                     url, 
                     HttpMethod.POST, 
                     entity, 
                     AIMessageEditApiResponse.class
             );
+            circuitBreaker.recordSuccess();
             
             if (response.getBody() != null) {
                 AIMessageEditApiResponse apiResponse = response.getBody();
@@ -118,19 +151,23 @@ public class AIServiceClient {
         } catch (HttpClientErrorException e) {
             log.error("HTTP client error calling AI service for message edit: {} - {}", 
                     e.getStatusCode(), e.getMessage());
+            circuitBreaker.recordSuccess();
             return createFallbackResponse(request.getOriginalMessage());
             
         } catch (HttpServerErrorException e) {
             log.error("HTTP server error calling AI service for message edit: {} - {}", 
                     e.getStatusCode(), e.getMessage());
+            circuitBreaker.recordFailure();
             return createFallbackResponse(request.getOriginalMessage());
             
         } catch (ResourceAccessException e) {
             log.error("Connection error calling AI service for message edit: {}", e.getMessage());
+            circuitBreaker.recordFailure();
             return createFallbackResponse(request.getOriginalMessage());
             
         } catch (Exception e) {
             log.error("Unexpected error calling AI service for message edit: {}", e.getMessage(), e);
+            circuitBreaker.recordFailure();
             return createFallbackResponse(request.getOriginalMessage());
         }
     }
@@ -141,16 +178,4 @@ public class AIServiceClient {
                 .originalMessage(originalMessage)
                 .build();
     }
-
-
-    public boolean isAIServiceAvailable() {
-        try {
-            String url = aiServiceBaseUrl + "/health";
-            restTemplate.getForObject(url, String.class);
-            return true;
-        } catch (Exception e) {
-            log.warn("AI service health check failed: {}", e.getMessage());
-            return false;
-        }
-    }
 }
@@ -0,0 +1,504 @@
+package com.amoura.module.matching.service;
+
+import com.amoura.module.matching.repository.CandidateProjection;
+import com.amoura.module.matching.repository.CandidateRepository;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * Chỉ mục ứng viên thường trú trong bộ nhớ: userId -> các thuộc tính gọn dùng để lọc.
+ * Được nạp một lần khi ứng dụng khởi động và cập nhật lại sau mỗi lần ghi user/profile,
+ * để luồng gợi ý dự phòng không phải quét toàn bộ bảng users.
+ * <ul>
+ *   <li>User được chia nhóm theo (giới tính, năm sinh) và theo ô lưới địa lý; truy vấn chỉ duyệt các nhóm khớp bộ lọc</li>
+ *   <li>Nạp lại toàn bộ dựng một bản chụp mới rồi thay tham chiếu một lần: luồng đọc không bao giờ thấy chỉ mục rỗng hay dở dang</li>
+ *   <li>Nạp lại toàn bộ định kỳ, để các đường ghi trạng thái user quên gọi {@link #refresh} tự được sửa</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CandidateIndex {
+
+    // Ô lưới địa lý 0.5 độ (~55km) để ưu tiên ứng viên ở gần
+    private static final double GEO_CELL_DEGREES = 0.5;
+    private static final int GEO_CELLS_PER_ROW = (int) (360 / GEO_CELL_DEGREES);
+    public static final long UNKNOWN_GEO_CELL = -1L;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = 111.32;
+    // Luồng gợi ý mặc định ưu tiên ứng viên chênh lệch tuổi trong khoảng này, thiếu mới nới rộng
+    static final int DEFAULT_AGE_WINDOW_YEARS = 5;
+    private static final short UNKNOWN_BIRTH_YEAR = 0;
+    private static final String UNKNOWN_SEX = "";
+
+    private final CandidateRepository candidateRepository;
+
+    private volatile Snapshot snapshot = new Snapshot();
+    private volatile boolean warmed = false;
+    // Các user được cập nhật trong lúc đang nạp lại toàn bộ; null khi không nạp lại
+    private Set<Long> changedDuringRebuild;
+    private final Object rebuildLock = new Object();
+
+    // 0 = tắt nạp lại định kỳ
+    @Value("${app.matching.candidate-index.rebuild-interval-minutes:30}")
+    private long rebuildIntervalMinutes;
+    private ScheduledExecutorService rebuilder;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to warm up candidate index, will retry on first lookup: {}", e.getMessage());
+        }
+        if (rebuildIntervalMinutes > 0) {
+            rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "candidate-index-rebuild");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rebuilder.scheduleWithFixedDelay(this::rebuildSafely, rebuildIntervalMinutes, rebuildIntervalMinutes,
+                    TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Periodic candidate index rebuild failed, keeping current snapshot: {}", e.getMessage());
+        }
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            Set<Long> changed;
+            Snapshot fresh = new Snapshot();
+            try {
+                for (CandidateProjection row : candidateRepository.findAllCandidates()) {
+                    fresh.put(toEntry(row));
+                }
+            } finally {
+                synchronized (this) {
+                    changed = changedDuringRebuild;
+                    changedDuringRebuild = null;
+                }
+            }
+            snapshot = fresh;
+            warmed = true;
+            // Dữ liệu đọc lúc nạp có thể cũ hơn các lần cập nhật đã chạy song song: đọc lại những user đó
+            changed.forEach(this::reload);
+            log.info("Candidate index loaded with {} users", fresh.entries.size());
+        }
+    }
+
+    /**
+     * Nạp lại thông tin một user. Nếu đang trong transaction thì chờ commit xong mới đọc,
+     * tránh đưa dữ liệu chưa commit (hoặc sẽ bị rollback) vào chỉ mục.
+     */
+    public void refresh(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload(userId);
+                }
+            });
+        } else {
+            reload(userId);
+        }
+    }
+
+    public synchronized void remove(Long userId) {
+        markChanged(userId);
+        snapshot.remove(userId);
+    }
+
+    public Entry get(Long userId) {
+        ensureWarmed();
+        return snapshot.entries.get(userId);
+    }
+
+    public int size() {
+        return snapshot.entries.size();
+    }
+
+    /**
+     * Trả về tối đa {@code limit} id ứng viên đang hoạt động, khác chính user và không bị loại trừ.
+     * Ưu tiên ứng viên chênh lệch tuổi trong {@link #DEFAULT_AGE_WINDOW_YEARS} năm (cùng ô địa lý trước),
+     * chưa đủ thì lấy thêm ngoài khoảng đó.
+     */
+    public List<Long> findCandidates(Long userId, LongPredicate excluded, int limit) {
+        ensureWarmed();
+        Snapshot current = snapshot;
+        Entry self = current.entries.get(userId);
+        List<Long> result = new ArrayList<>(Math.max(limit, 0));
+        Set<Long> taken = new HashSet<>();
+        if (self != null && self.getBirthYear() != UNKNOWN_BIRTH_YEAR) {
+            Filter window = Filter.builder()
+                    .minBirthYear(self.getBirthYear() - DEFAULT_AGE_WINDOW_YEARS)
+                    .maxBirthYear(self.getBirthYear() + DEFAULT_AGE_WINDOW_YEARS)
+                    .build();
+            collect(current, userId, self, window, excluded, limit, result, taken);
+        }
+        collect(current, userId, self, Filter.ANY, excluded, limit, result, taken);
+        return result;
+    }
+
+    /**
+     * Trả về tối đa {@code limit} id ứng viên khớp bộ lọc. Chỉ duyệt các nhóm (giới tính, năm sinh) nằm trong bộ lọc:
+     * cùng ô địa lý với user trước, sau đó theo năm sinh gần với user nhất.
+     */
+    public List<Long> findCandidates(Long userId, Filter filter, LongPredicate excluded, int limit) {
+        ensureWarmed();
+        Snapshot current = snapshot;
+        List<Long> result = new ArrayList<>(Math.max(limit, 0));
+        collect(current, userId, current.entries.get(userId), filter, excluded, limit, result, new HashSet<>());
+        return result;
+    }
+
+    /**
+     * Tìm tối đa {@code limit} ứng viên gần nhất trong bán kính {@code radiusKm} quanh một toạ độ.
+     * Chỉ duyệt các ô lưới phủ bán kính rồi sắp xếp theo khoảng cách thực (haversine).
+     */
+    public List<Long> findNearest(Long userId, double latitude, double longitude, double radiusKm,
+                                  LongPredicate excluded, int limit) {
+        ensureWarmed();
+        if (limit <= 0 || radiusKm <= 0) {
+            return new ArrayList<>();
+        }
+        Snapshot current = snapshot;
+
+        int centerRow = (int) Math.floor((latitude + 90) / GEO_CELL_DEGREES);
+        int centerCol = (int) Math.floor((longitude + 180) / GEO_CELL_DEGREES);
+        int rowSpan = (int) Math.ceil(radiusKm / KM_PER_DEGREE / GEO_CELL_DEGREES);
+        double lonScale = Math.max(Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + rowSpan * GEO_CELL_DEGREES, 89.0))), 0.01);
+        int colSpan = Math.min((int) Math.ceil(radiusKm / (KM_PER_DEGREE * lonScale) / GEO_CELL_DEGREES), (GEO_CELLS_PER_ROW - 1) / 2);
+
+        List<Map.Entry<Long, Double>> hits = new ArrayList<>();
+        for (int row = centerRow - rowSpan; row <= centerRow + rowSpan; row++) {
+            if (row < 0 || row >= GEO_CELLS_PER_ROW / 2) {
+                continue;
+            }
+            for (int col = centerCol - colSpan; col <= centerCol + colSpan; col++) {
+                int wrappedCol = Math.floorMod(col, GEO_CELLS_PER_ROW);
+                Set<Long> members = current.cellMembers.get((long) row * GEO_CELLS_PER_ROW + wrappedCol);
+                if (members == null) {
+                    continue;
+                }
+                for (Long memberId : members) {
+                    Entry entry = current.entries.get(memberId);
+                    if (entry == null || !isEligible(entry, userId, excluded)) {
+                        continue;
+                    }
+                    double distance = distanceKm(latitude, longitude, entry.getLatitude(), entry.getLongitude());
+                    if (distance <= radiusKm) {
+                        hits.add(Map.entry(memberId, distance));
+                    }
+                }
+            }
+        }
+
+        hits.sort(Map.Entry.comparingByValue());
+        List<Long> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).getKey());
+        }
+        return result;
+    }
+
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private void collect(Snapshot current, Long userId, Entry self, Filter filter, LongPredicate excluded,
+                         int limit, List<Long> result, Set<Long> taken) {
+        if (result.size() >= limit) {
+            return;
+        }
+
+        // Cùng ô địa lý trước
+        if (self != null && self.getGeoCell() != UNKNOWN_GEO_CELL) {
+            Set<Long> neighbours = current.cellMembers.get(self.getGeoCell());
+            if (neighbours != null) {
+                for (Long memberId : neighbours) {
+                    Entry entry = current.entries.get(memberId);
+                    if (entry != null && filter.matches(entry) && accept(entry, userId, excluded, result, taken)
+                            && result.size() >= limit) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Sau đó theo nhóm năm sinh, từ năm gần năm sinh của user ra xa
+        short center = self != null && self.getBirthYear() != UNKNOWN_BIRTH_YEAR
+                ? self.getBirthYear() : (short) ((filter.lowerYear() + filter.upperYear()) / 2);
+        List<NavigableMap<Short, Set<Long>>> years = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentSkipListMap<Short, Set<Long>>> bySex : current.buckets.entrySet()) {
+            if (filter.getSex() == null || filter.getSex().equalsIgnoreCase(bySex.getKey())) {
+                years.add(bySex.getValue().subMap(filter.lowerYear(), true, filter.upperYear(), true));
+            }
+        }
+        for (short year : yearsByDistance(years, center)) {
+            for (NavigableMap<Short, Set<Long>> bucketsOfSex : years) {
+                Set<Long> members = bucketsOfSex.get(year);
+                if (members == null) {
+                    continue;
+                }
+                for (Long memberId : members) {
+                    Entry entry = current.entries.get(memberId);
+                    if (entry != null && filter.matches(entry) && accept(entry, userId, excluded, result, taken)
+                            && result.size() >= limit) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Các năm sinh có trong nhóm, sắp theo khoảng cách tới {@code center} (năm chưa khai báo nằm cuối)
+    private static List<Short> yearsByDistance(List<NavigableMap<Short, Set<Long>>> years, short center) {
+        NavigableMap<Short, Boolean> distinct = new TreeMap<>();
+        for (NavigableMap<Short, Set<Long>> bucketsOfSex : years) {
+            for (Short year : bucketsOfSex.keySet()) {
+                distinct.put(year, Boolean.TRUE);
+            }
+        }
+        List<Short> ordered = new ArrayList<>(distinct.size());
+        Iterator<Short> below = distinct.headMap(center, false).descendingKeySet().iterator();
+        Iterator<Short> above = distinct.tailMap(center, true).keySet().iterator();
+        Short nextBelow = below.hasNext() ? below.next() : null;
+        Short nextAbove = above.hasNext() ? above.next() : null;
+        while (nextBelow != null || nextAbove != null) {
+            if (nextBelow == null || (nextAbove != null && nextAbove - center <= center - nextBelow)) {
+                ordered.add(nextAbove);
+                nextAbove = above.hasNext() ? above.next() : null;
+            } else {
+                ordered.add(nextBelow);
+                nextBelow = below.hasNext() ? below.next() : null;
+            }
+        }
+        return ordered;
+    }
+
+    private boolean accept(Entry entry, Long userId, LongPredicate excluded, List<Long> result, Set<Long> taken) {
+        if (!isEligible(entry, userId, excluded) || !taken.add(entry.getUserId())) {
+            return false;
+        }
+        result.add(entry.getUserId());
+        return true;
+    }
+
+    private boolean isEligible(Entry entry, Long userId, LongPredicate excluded) {
+        return entry.isActive()
+                && entry.getUserId() != userId
+                && !excluded.test(entry.getUserId());
+    }
+
+    private void ensureWarmed() {
+        if (!warmed) {
+            synchronized (rebuildLock) {
+                if (!warmed) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    private void reload(Long userId) {
+        try {
+            candidateRepository.findCandidateById(userId)
+                    .ifPresentOrElse(row -> put(toEntry(row)), () -> remove(userId));
+        } catch (Exception e) {
+            log.error("Failed to refresh candidate index for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private synchronized void put(Entry entry) {
+        markChanged(entry.getUserId());
+        snapshot.put(entry);
+    }
+
+    private void markChanged(Long userId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(userId);
+        }
+    }
+
+    private Entry toEntry(CandidateProjection row) {
+        boolean located = row.getLatitude() != null && row.getLongitude() != null;
+        return new Entry(
+                row.getUserId(),
+                "active".equalsIgnoreCase(row.getStatus()),
+                row.getSex(),
+                row.getOrientationId() != null ? row.getOrientationId() : 0L,
+                row.getDateOfBirth() != null ? (short) row.getDateOfBirth().getYear() : UNKNOWN_BIRTH_YEAR,
+                geoCellOf(row.getLatitude(), row.getLongitude()),
+                located ? row.getLatitude().floatValue() : Float.NaN,
+                located ? row.getLongitude().floatValue() : Float.NaN
+        );
+    }
+
+    static long geoCellOf(BigDecimal latitude, BigDecimal longitude) {
+        if (latitude == null || longitude == null) {
+            return UNKNOWN_GEO_CELL;
+        }
+        long row = (long) Math.floor((latitude.doubleValue() + 90) / GEO_CELL_DEGREES);
+        long col = (long) Math.floor((longitude.doubleValue() + 180) / GEO_CELL_DEGREES);
+        return row * GEO_CELLS_PER_ROW + col;
+    }
+
+    private static String sexKey(String sex) {
+        return sex != null ? sex.toLowerCase() : UNKNOWN_SEX;
+    }
+
+    /**
+     * Một bản chụp của chỉ mục. Ghi (put/remove) được tuần tự hoá bởi {@link CandidateIndex},
+     * đọc không cần khoá vì mọi cấu trúc bên trong đều là concurrent.
+     */
+    private static final class Snapshot {
+        final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        // geoCell -> các user trong ô đó, dùng cho tìm kiếm theo bán kính
+        final Map<Long, Set<Long>> cellMembers = new ConcurrentHashMap<>();
+        // giới tính -> năm sinh -> các user
+        final Map<String, ConcurrentSkipListMap<Short, Set<Long>>> buckets = new ConcurrentHashMap<>();
+
+        void put(Entry entry) {
+            Entry previous = entries.put(entry.getUserId(), entry);
+            if (previous != null) {
+                if (previous.getGeoCell() != entry.getGeoCell()) {
+                    removeFromCell(previous);
+                }
+                if (!sexKey(previous.getSex()).equals(sexKey(entry.getSex())) || previous.getBirthYear() != entry.getBirthYear()) {
+                    removeFromBucket(previous);
+                }
+            }
+            if (entry.getGeoCell() != UNKNOWN_GEO_CELL) {
+                cellMembers.computeIfAbsent(entry.getGeoCell(), cell -> ConcurrentHashMap.newKeySet()).add(entry.getUserId());
+            }
+            buckets.computeIfAbsent(sexKey(entry.getSex()), sex -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(entry.getBirthYear(), year -> ConcurrentHashMap.newKeySet())
+                    .add(entry.getUserId());
+        }
+
+        void remove(Long userId) {
+            Entry removed = entries.remove(userId);
+            if (removed != null) {
+                removeFromCell(removed);
+                removeFromBucket(removed);
+            }
+        }
+
+        private void removeFromCell(Entry entry) {
+            if (entry.getGeoCell() == UNKNOWN_GEO_CELL) {
+                return;
+            }
+            cellMembers.computeIfPresent(entry.getGeoCell(), (cell, members) -> {
+                members.remove(entry.getUserId());
+                return members.isEmpty() ? null : members;
+            });
+        }
+
+        private void removeFromBucket(Entry entry) {
+            ConcurrentSkipListMap<Short, Set<Long>> years = buckets.get(sexKey(entry.getSex()));
+            if (years != null) {
+                years.computeIfPresent(entry.getBirthYear(), (year, members) -> {
+                    members.remove(entry.getUserId());
+                    return members.isEmpty() ? null : members;
+                });
+            }
+        }
+    }
+
+    /**
+     * Bộ lọc ứng viên; trường null nghĩa là không lọc theo thuộc tính đó.
+     * Khi có giới hạn năm sinh, user chưa khai báo ngày sinh bị loại.
+     */
+    @Getter
+    @Builder
+    public static final class Filter {
+        public static final Filter ANY = Filter.builder().build();
+
+        private final String sex;
+        private final Long orientationId;
+        private final Integer minBirthYear;
+        private final Integer maxBirthYear;
+
+        boolean matches(Entry entry) {
+            return (sex == null || sex.equalsIgnoreCase(entry.getSex()))
+                    && (orientationId == null || orientationId == entry.getOrientationId())
+                    && entry.getBirthYear() >= lowerYear()
+                    && entry.getBirthYear() <= upperYear();
+        }
+
+        short lowerYear() {
+            return minBirthYear != null ? (short) Math.max(minBirthYear, 1) : UNKNOWN_BIRTH_YEAR;
+        }
+
+        short upperYear() {
+            return maxBirthYear != null ? maxBirthYear.shortValue() : Short.MAX_VALUE;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Entry {
+        private final long userId;
+        private final boolean active;
+        private final String sex;
+        private final long orientationId; // 0 nếu chưa khai báo
+        private final short birthYear;    // 0 nếu chưa khai báo
+        private final long geoCell;
+        private final float latitude;     // NaN nếu chưa có vị trí
+        private final float longitude;
+
+        public boolean hasLocation() {
+            return !Float.isNaN(latitude) && !Float.isNaN(longitude);
+        }
+    }
+}
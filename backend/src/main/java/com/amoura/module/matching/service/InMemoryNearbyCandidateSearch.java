@@ -0,0 +1,26 @@
+package com.amoura.module.matching.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Tìm kiếm theo khoảng cách trên lưới ô địa lý của {@link CandidateIndex}.
+ * Mặc định; dùng được cả khi database không có PostGIS.
+ */
+@Component
+@ConditionalOnProperty(name = "app.matching.geo-search", havingValue = "memory", matchIfMissing = true)
+@RequiredArgsConstructor
+public class InMemoryNearbyCandidateSearch implements NearbyCandidateSearch {
+
+    private final CandidateIndex candidateIndex;
+
+    @Override
+    public List<Long> findNearest(Long userId, double latitude, double longitude, double radiusKm,
+                                  LongPredicate excluded, int limit) {
+        return candidateIndex.findNearest(userId, latitude, longitude, radiusKm, excluded, limit);
+    }
+}
@@ -0,0 +1,164 @@
+package com.amoura.module.matching.service;
+
+import com.amoura.module.matching.repository.SwipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Chỉ mục "ai đã like tôi": targetUserId -> bitmap id những người đã like user đó.
+ * Dùng để phát hiện like hai chiều bằng một phép kiểm tra bitmap thay vì truy vấn bảng swipes.
+ * Bitmap được nạp lười từ database ở lần kiểm tra đầu tiên và cập nhật sau mỗi swipe;
+ * số user thường trú bị giới hạn bởi LRU. Swipe commit trong lúc đang nạp được giữ lại theo thứ tự
+ * và áp lên bitmap trước khi đưa vào cache, để không bỏ lỡ like hai chiều.
+ */
+@Component
+@Slf4j
+public class InboundLikeIndex {
+
+    private final SwipeRepository swipeRepository;
+    private final Map<Long, Roaring64Bitmap> likersByTarget;
+    // User đang được nạp từ database; đọc/ghi dưới khoá của likersByTarget
+    private final Map<Long, PendingLoad> loading = new HashMap<>();
+
+    public InboundLikeIndex(SwipeRepository swipeRepository,
+                            @Value("${app.matching.inbound-likes.max-users:10000}") int maxUsers) {
+        this.swipeRepository = swipeRepository;
+        this.likersByTarget = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Roaring64Bitmap> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * {@code likerId} đã like {@code targetUserId} hay chưa.
+     */
+    public boolean hasLiked(Long likerId, Long targetUserId) {
+        Roaring64Bitmap likers = getOrLoad(targetUserId);
+        synchronized (likers) {
+            return likers.contains(likerId);
+        }
+    }
+
+    /**
+     * Ghi nhận kết quả một swipe sau khi transaction commit: like thì thêm, dislike thì bỏ
+     * (trường hợp user đổi ý trong thời gian cho phép).
+     */
+    public void recordSwipe(Long initiatorId, Long targetUserId, boolean isLike) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyIfResident(initiatorId, targetUserId, isLike);
+                }
+            });
+        } else {
+            applyIfResident(initiatorId, targetUserId, isLike);
+        }
+    }
+
+    public void evict(Long targetUserId) {
+        synchronized (likersByTarget) {
+            likersByTarget.remove(targetUserId);
+        }
+    }
+
+    private void applyIfResident(Long initiatorId, Long targetUserId, boolean isLike) {
+        Roaring64Bitmap likers;
+        synchronized (likersByTarget) {
+            likers = likersByTarget.get(targetUserId);
+            if (likers == null) {
+                PendingLoad pending = loading.get(targetUserId);
+                if (pending != null) {
+                    pending.deltas.add(new Delta(initiatorId, isLike));
+                }
+                return;
+            }
+        }
+        synchronized (likers) {
+            apply(likers, initiatorId, isLike);
+        }
+    }
+
+    private Roaring64Bitmap getOrLoad(Long targetUserId) {
+        PendingLoad pending;
+        boolean owner = false;
+        synchronized (likersByTarget) {
+            Roaring64Bitmap cached = likersByTarget.get(targetUserId);
+            if (cached != null) {
+                return cached;
+            }
+            pending = loading.get(targetUserId);
+            if (pending == null) {
+                pending = new PendingLoad();
+                loading.put(targetUserId, pending);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            // Một luồng khác đang nạp user này: chờ kết quả thay vì truy vấn lần nữa
+            return pending.result.join();
+        }
+
+        Roaring64Bitmap loaded = new Roaring64Bitmap();
+        try {
+            for (Long likerId : swipeRepository.findLikerIdsByTargetUserId(targetUserId)) {
+                loaded.addLong(likerId);
+            }
+        } catch (RuntimeException e) {
+            synchronized (likersByTarget) {
+                loading.remove(targetUserId);
+            }
+            pending.result.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (likersByTarget) {
+            // Áp các swipe commit trong lúc đang truy vấn, theo đúng thứ tự, rồi mới đưa bitmap vào cache
+            for (Delta delta : pending.deltas) {
+                apply(loaded, delta.initiatorId, delta.isLike);
+            }
+            loaded.runOptimize();
+            loading.remove(targetUserId);
+            likersByTarget.put(targetUserId, loaded);
+        }
+        pending.result.complete(loaded);
+        log.debug("Loaded inbound likes for user {} with {} entries", targetUserId, loaded.getLongCardinality());
+        return loaded;
+    }
+
+    private static void apply(Roaring64Bitmap likers, long initiatorId, boolean isLike) {
+        if (isLike) {
+            likers.addLong(initiatorId);
+        } else {
+            likers.removeLong(initiatorId);
+        }
+    }
+
+    private static final class Delta {
+        final long initiatorId;
+        final boolean isLike;
+
+        Delta(long initiatorId, boolean isLike) {
+            this.initiatorId = initiatorId;
+            this.isLike = isLike;
+        }
+    }
+
+    private static final class PendingLoad {
+        final List<Delta> deltas = new ArrayList<>();
+        final CompletableFuture<Roaring64Bitmap> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,52 @@
+package com.amoura.module.matching.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Khoá phân dải (lock striping) theo cặp user chuẩn hoá (id nhỏ, id lớn).
+ * Khi hai user like nhau cùng lúc, chỉ một bên được kiểm tra/tạo Match tại một thời điểm,
+ * tránh tạo hai bản ghi Match cho cùng một cặp.
+ * Khoá được giữ tới khi transaction kết thúc để bên còn lại thấy được Match đã commit.
+ */
+@Component
+public class MatchPairLocks {
+
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public MatchPairLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Khoá cặp user và tự mở khi transaction hiện tại commit hoặc rollback.
+     * Ngoài transaction thì nơi gọi phải tự gọi {@link ReentrantLock#unlock()} trên khoá trả về.
+     */
+    public ReentrantLock lockUntilCompletion(Long userA, Long userB) {
+        ReentrantLock lock = lockFor(userA, userB);
+        lock.lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        }
+        return lock;
+    }
+
+    ReentrantLock lockFor(Long userA, Long userB) {
+        long low = Math.min(userA, userB);
+        long high = Math.max(userA, userB);
+        long hash = low * 31 + high;
+        return locks[(int) Math.floorMod(hash ^ (hash >>> 32), (long) STRIPES)];
+    }
+}
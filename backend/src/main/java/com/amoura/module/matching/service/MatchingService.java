@@ -1,5 +1,6 @@
 package com.amoura.module.matching.service;
 
+import com.amoura.module.matching.dto.CursorPaginationResponse;
 import com.amoura.module.matching.dto.ReceivedLikeDTO;
 import com.amoura.module.matching.dto.SwipeRequest;
 import com.amoura.module.matching.dto.SwipeResponse;
@@ -14,6 +15,11 @@ public interface MatchingService {
      */
     List<UserRecommendationDTO> getRecommendedUsers(String userEmail);
     
+    /**
+     * Lấy tối đa limit người dùng phù hợp gần nhất trong bán kính radiusKm
+     */
+    List<UserRecommendationDTO> getNearbyUsers(String userEmail, double radiusKm, int limit);
+    
     /**
      * Xử lý swipe (like/pass) của người dùng
      */
@@ -23,4 +29,9 @@ public interface MatchingService {
      * Lấy danh sách tất cả người đã like mình nhưng mình chưa like hoặc dislike
      */
     List<ReceivedLikeDTO> getReceivedLikes(String userEmail);
-} 
\ No newline at end of file
+    
+    /**
+     * Lấy danh sách người đã like mình theo trang (keyset theo thời gian like), không đếm tổng
+     */
+    CursorPaginationResponse<ReceivedLikeDTO> getReceivedLikes(String userEmail, Long cursor, int limit);
+}
@@ -5,36 +5,28 @@ import com.amoura.module.chat.dto.ChatRoomDTO;
 import com.amoura.module.chat.service.ChatService;
 import com.amoura.module.matching.domain.Match;
 import com.amoura.module.matching.domain.Swipe;
+import com.amoura.module.matching.dto.CursorPaginationResponse;
 import com.amoura.module.matching.dto.ReceivedLikeDTO;
 import com.amoura.module.matching.dto.SwipeRequest;
 import com.amoura.module.matching.dto.SwipeResponse;
 import com.amoura.module.matching.dto.UserRecommendationDTO;
 import com.amoura.module.matching.repository.MatchRepository;
+import com.amoura.module.matching.repository.ReceivedLikeProjection;
 import com.amoura.module.matching.repository.SwipeRepository;
 import com.amoura.module.notification.service.NotificationService;
-import com.amoura.module.profile.domain.Photo;
-import com.amoura.module.profile.dto.InterestDTO;
-import com.amoura.module.profile.dto.PetDTO;
-import com.amoura.module.profile.dto.PhotoDTO;
-import com.amoura.module.profile.domain.Profile;
-import com.amoura.module.profile.repository.ProfileRepository;
-import com.amoura.module.profile.repository.UserInterestRepository;
-import com.amoura.module.profile.repository.UserPetRepository;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.Period;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.LongPredicate;
 
 @Service
 @RequiredArgsConstructor
@@ -42,14 +34,23 @@ import java.util.stream.Collectors;
 public class MatchingServiceImpl implements MatchingService {
 
     private final UserRepository userRepository;
-    private final ProfileRepository profileRepository;
     private final SwipeRepository swipeRepository;
     private final MatchRepository matchRepository;
-    private final UserInterestRepository userInterestRepository;
-    private final UserPetRepository userPetRepository;
     private final NotificationService notificationService;
     private final ChatService chatService;
-    private final AIServiceClient aiServiceClient;
+    private final CandidateIndex candidateIndex;
+    private final SwipedSetCache swipedSetCache;
+    private final RecommendationDeckCache recommendationDeckCache;
+    private final SwipeWriteBehindQueue swipeWriteBehindQueue;
+    private final InboundLikeIndex inboundLikeIndex;
+    private final MatchPairLocks matchPairLocks;
+    private final ProfileCardAssembler profileCardAssembler;
+    private final NearbyCandidateSearch nearbyCandidateSearch;
+
+    private static final int BASIC_RECOMMENDATION_LIMIT = 20;
+    private static final int MAX_NEARBY_LIMIT = 100;
+    private static final double MAX_NEARBY_RADIUS_KM = 500;
+    private static final int MAX_RECEIVED_LIKES_LIMIT = 100;
 
     @Override
     @Transactional(readOnly = true)
@@ -57,52 +58,44 @@ public class MatchingServiceImpl implements MatchingService {
         User currentUser = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
 
-        // Try to get AI-powered recommendations first
-        List<Long> aiRecommendedUserIds = Collections.emptyList();
-        try {
-            if (aiServiceClient.isAIServiceAvailable()) {
-                log.info("Using AI service for recommendations for user: {}", currentUser.getId());
-                aiRecommendedUserIds = aiServiceClient.getPotentialMatches(currentUser.getId(), 20);
-            } else {
-                log.warn("AI service is not available, falling back to basic recommendations");
-            }
-        } catch (Exception e) {
-            log.error("Error calling AI service, falling back to basic recommendations: {}", e.getMessage());
-        }
+        // Đọc từ bộ bài dựng sẵn; AI service chỉ được gọi khi bổ sung bộ bài ở nền
+        LongPredicate alreadySwiped = swipedSetCache.exclusionFor(currentUser.getId());
+        List<Long> recommendedUserIds = recommendationDeckCache.peek(
+                currentUser.getId(), BASIC_RECOMMENDATION_LIMIT, alreadySwiped);
 
-        List<User> recommendedUsers;
-        
-        if (!aiRecommendedUserIds.isEmpty()) {
-            // Use AI recommendations
-            log.info("Found {} AI recommendations for user {}", aiRecommendedUserIds.size(), currentUser.getId());
-            recommendedUsers = userRepository.findAllById(aiRecommendedUserIds);
-        } else {
-            // Fallback to basic recommendation logic
-            log.info("Using fallback recommendation logic for user {}", currentUser.getId());
-            recommendedUsers = getBasicRecommendations(currentUser);
+        if (recommendedUserIds.isEmpty()) {
+            // Bộ bài đang được dựng, tạm lấy ứng viên từ chỉ mục trong bộ nhớ
+            log.info("Recommendation deck is empty for user {}, using candidate index", currentUser.getId());
+            recommendedUserIds = candidateIndex.findCandidates(
+                    currentUser.getId(), alreadySwiped, BASIC_RECOMMENDATION_LIMIT);
         }
 
         // Convert to DTO and return
-        return recommendedUsers.stream()
-                .map(this::convertToUserRecommendationDTO)
-                .collect(Collectors.toList());
+        return profileCardAssembler.toRecommendations(recommendedUserIds);
     }
 
-    private List<User> getBasicRecommendations(User currentUser) {
-        // Lấy danh sách tất cả người dùng khác (trừ người dùng hiện tại)
-        List<User> allUsers = userRepository.findAll().stream()
-                .filter(user -> !user.getId().equals(currentUser.getId()))
-                .collect(Collectors.toList());
-
-        // Lọc ra những người dùng chưa được swipe
-        List<Long> swipedUserIds = swipeRepository.findByInitiatorId(currentUser.getId())
-                .stream()
-                .map(swipe -> swipe.getTargetUser().getId())
-                .collect(Collectors.toList());
-
-        return allUsers.stream()
-                .filter(user -> !swipedUserIds.contains(user.getId()))
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserRecommendationDTO> getNearbyUsers(String userEmail, double radiusKm, int limit) {
+        User currentUser = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
+
+        if (radiusKm <= 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "Radius must be between 0 and " + (int) MAX_NEARBY_RADIUS_KM + " km", "INVALID_RADIUS");
+        }
+        int normalizedLimit = Math.max(1, Math.min(limit, MAX_NEARBY_LIMIT));
+
+        CandidateIndex.Entry self = candidateIndex.get(currentUser.getId());
+        if (self == null || !self.hasLocation()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "User location is not set", "LOCATION_REQUIRED");
+        }
+
+        List<Long> nearestIds = nearbyCandidateSearch.findNearest(currentUser.getId(),
+                self.getLatitude(), self.getLongitude(), radiusKm,
+                swipedSetCache.exclusionFor(currentUser.getId()), normalizedLimit);
+
+        return profileCardAssembler.toRecommendations(nearestIds);
     }
 
     @Override
@@ -111,6 +104,14 @@ public class MatchingServiceImpl implements MatchingService {
         User initiator = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
 
+        // Dislike không cần kiểm tra match, ghi nền theo lô nếu bật chế độ write-behind
+        if (!Boolean.TRUE.equals(request.getIsLike()) && swipeWriteBehindQueue.isEnabled()) {
+            SwipeResponse queued = queueDislike(initiator.getId(), request.getTargetUserId());
+            if (queued != null) {
+                return queued;
+            }
+        }
+
         User targetUser = userRepository.findById(request.getTargetUserId())
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Target user not found", "TARGET_USER_NOT_FOUND"));
 
@@ -119,6 +120,18 @@ public class MatchingServiceImpl implements MatchingService {
             throw new ApiException(HttpStatus.BAD_REQUEST, "Cannot swipe yourself", "INVALID_SWIPE");
         }
 
+        // Like cần giữ khoá theo cặp tới khi commit, để hai user like nhau cùng lúc không bỏ lỡ
+        // hoặc tạo trùng Match
+        if (Boolean.TRUE.equals(request.getIsLike())) {
+            matchPairLocks.lockUntilCompletion(initiator.getId(), targetUser.getId());
+        }
+
+        // Dislike còn trong hàng đợi write-behind chưa thấy được trong bảng swipes: ghi xuống trước,
+        // để áp dụng quy tắc cập nhật trong 1 giờ và không trùng unique_swipe_pair với luồng ghi nền
+        if (!swipeWriteBehindQueue.awaitWritten(initiator.getId(), targetUser.getId())) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Previous swipe is still being saved, please retry", "SWIPE_PENDING");
+        }
+
         // Kiểm tra đã swipe trước đó chưa
         Optional<Swipe> existingSwipeOpt = swipeRepository.findByInitiatorAndTargetUser(initiator.getId(), targetUser.getId());
         if (existingSwipeOpt.isPresent()) {
@@ -129,6 +142,7 @@ public class MatchingServiceImpl implements MatchingService {
                 // Cho phép update is_like
                 existingSwipe.setIsLike(request.getIsLike());
                 Swipe updatedSwipe = swipeRepository.save(existingSwipe);
+                inboundLikeIndex.recordSwipe(initiator.getId(), targetUser.getId(), request.getIsLike());
                 // Nếu là like, kiểm tra có match không
                 return handleLikeSwipe(initiator, targetUser, updatedSwipe);
             } else {
@@ -144,16 +158,40 @@ public class MatchingServiceImpl implements MatchingService {
                 .build();
 
         Swipe savedSwipe = swipeRepository.save(swipe);
+        swipedSetCache.recordSwipe(initiator.getId(), targetUser.getId());
+        recommendationDeckCache.consume(initiator.getId(), targetUser.getId());
+        inboundLikeIndex.recordSwipe(initiator.getId(), targetUser.getId(), request.getIsLike());
 
         // Nếu là like, kiểm tra có match không
         return handleLikeSwipe(initiator, targetUser, savedSwipe);
     }
 
-    private SwipeResponse handleLikeSwipe(User initiator, User targetUser, Swipe swipe) {
-        // Kiểm tra xem target user đã like initiator chưa
-        Optional<Swipe> targetUserLike = swipeRepository.findLikeByInitiatorAndTargetUser(targetUser.getId(), initiator.getId());
+    /**
+     * Trả về null nếu swipe phải đi theo luồng đồng bộ: target không có trong chỉ mục,
+     * đã swipe trước đó (cần kiểm tra quy tắc cập nhật trong 1 giờ) hoặc hàng đợi đầy.
+     */
+    private SwipeResponse queueDislike(Long initiatorId, Long targetUserId) {
+        if (initiatorId.equals(targetUserId)) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Cannot swipe yourself", "INVALID_SWIPE");
+        }
+        if (candidateIndex.get(targetUserId) == null
+                || swipedSetCache.hasSwiped(initiatorId, targetUserId)
+                || !swipeWriteBehindQueue.offer(initiatorId, targetUserId, false)) {
+            return null;
+        }
+
+        swipedSetCache.recordSwipe(initiatorId, targetUserId);
+        recommendationDeckCache.consume(initiatorId, targetUserId);
 
-        if (targetUserLike.isPresent()) {
+        // Chưa có id vì swipe chưa được ghi xuống database
+        return SwipeResponse.builder()
+                .isMatch(false)
+                .build();
+    }
+
+    private SwipeResponse handleLikeSwipe(User initiator, User targetUser, Swipe swipe) {
+        // Kiểm tra xem target user đã like initiator chưa, tra trong chỉ mục like thay vì truy vấn bảng swipes
+        if (Boolean.TRUE.equals(swipe.getIsLike()) && inboundLikeIndex.hasLiked(targetUser.getId(), initiator.getId())) {
             // Kiểm tra xem đã có match trước đó chưa
             Optional<Match> existingMatch = matchRepository.findByUsers(initiator.getId(), targetUser.getId());
             
@@ -220,81 +258,6 @@ public class MatchingServiceImpl implements MatchingService {
                 .build();
     }
 
-    private UserRecommendationDTO convertToUserRecommendationDTO(User user) {
-        Profile profile = profileRepository.findById(user.getId()).orElse(null);
-        
-        List<PhotoDTO> photos = user.getPhotos().stream()
-                .map(this::convertToPhotoDTO)
-                .collect(Collectors.toList());
-
-        Integer age = null;
-        if (profile != null && profile.getDateOfBirth() != null) {
-            age = Period.between(profile.getDateOfBirth(), LocalDate.now()).getYears();
-        }
-
-        String location = "Unknown";
-        Double latitude = null;
-        Double longitude = null;
-        
-        if (user.getLocation() != null) {
-            location = String.format("%s, %s", 
-                    user.getLocation().getCity() != null ? user.getLocation().getCity() : "",
-                    user.getLocation().getCountry() != null ? user.getLocation().getCountry() : "");
-            
-            if (user.getLocation().getLatitudes() != null) {
-                latitude = user.getLocation().getLatitudes().doubleValue();
-            }
-            if (user.getLocation().getLongitudes() != null) {
-                longitude = user.getLocation().getLongitudes().doubleValue();
-            }
-        }
-
-        // Lấy danh sách sở thích
-        List<InterestDTO> interests = userInterestRepository.findByUserId(user.getId())
-                .stream()
-                .map(userInterest -> InterestDTO.builder()
-                        .id(userInterest.getInterest().getId())
-                        .name(userInterest.getInterest().getName())
-                        .build())
-                .collect(Collectors.toList());
-
-        // Lấy danh sách pets
-        List<PetDTO> pets = userPetRepository.findByUserId(user.getId())
-                .stream()
-                .map(userPet -> PetDTO.builder()
-                        .id(userPet.getPet().getId())
-                        .name(userPet.getPet().getName())
-                        .build())
-                .collect(Collectors.toList());
-
-        return UserRecommendationDTO.builder()
-                .userId(user.getId())
-                .username(user.getActualUsername())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .dateOfBirth(profile != null ? profile.getDateOfBirth() : null)
-                .age(age)
-                .height(profile != null ? profile.getHeight() : null)
-                .sex(profile != null ? profile.getSex() : null)
-                .bio(profile != null ? profile.getBio() : null)
-                .location(location)
-                .latitude(latitude)
-                .longitude(longitude)
-                .interests(interests)
-                .pets(pets)
-                .photos(photos)
-                .build();
-    }
-
-    private PhotoDTO convertToPhotoDTO(Photo photo) {
-        return PhotoDTO.builder()
-                .id(photo.getId())
-                .url(photo.getPath())
-                .type(photo.getType())
-                .uploadedAt(photo.getCreatedAt())
-                .build();
-    }
-
     @Override
     @Transactional(readOnly = true)
     public List<ReceivedLikeDTO> getReceivedLikes(String userEmail) {
@@ -302,78 +265,36 @@ public class MatchingServiceImpl implements MatchingService {
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
 
         // Lấy tất cả swipe mà người khác đã like mình nhưng mình chưa phản hồi
-        List<Swipe> pendingLikes = swipeRepository.findPendingLikesReceivedByUser(currentUser.getId());
+        List<ReceivedLikeProjection> pendingLikes = swipeRepository.findPendingLikesReceivedByUser(currentUser.getId());
 
         // Chuyển đổi thành DTO
-        return pendingLikes.stream()
-                .map(swipe -> convertToReceivedLikeDTO(swipe.getInitiator(), swipe.getCreatedAt()))
-                .collect(Collectors.toList());
+        return profileCardAssembler.toReceivedLikes(pendingLikes);
     }
 
-    private ReceivedLikeDTO convertToReceivedLikeDTO(User user, LocalDateTime likedAt) {
-        Profile profile = profileRepository.findById(user.getId()).orElse(null);
-        
-        List<PhotoDTO> photos = user.getPhotos().stream()
-                .map(this::convertToPhotoDTO)
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPaginationResponse<ReceivedLikeDTO> getReceivedLikes(String userEmail, Long cursor, int limit) {
+        User currentUser = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
 
-        Integer age = null;
-        if (profile != null && profile.getDateOfBirth() != null) {
-            age = Period.between(profile.getDateOfBirth(), LocalDate.now()).getYears();
-        }
+        int normalizedLimit = Math.max(1, Math.min(limit, MAX_RECEIVED_LIKES_LIMIT));
+        // Lấy dư một phần tử để biết còn trang sau mà không cần COUNT
+        Pageable pageable = PageRequest.of(0, normalizedLimit + 1);
+        List<ReceivedLikeProjection> pendingLikes = cursor == null
+                ? swipeRepository.findPendingLikesReceivedByUser(currentUser.getId(), pageable)
+                : swipeRepository.findPendingLikesReceivedByUserBefore(currentUser.getId(), cursor, pageable);
 
-        String location = "Unknown";
-        Double latitude = null;
-        Double longitude = null;
-        
-        if (user.getLocation() != null) {
-            location = String.format("%s, %s", 
-                    user.getLocation().getCity() != null ? user.getLocation().getCity() : "",
-                    user.getLocation().getCountry() != null ? user.getLocation().getCountry() : "");
-            
-            if (user.getLocation().getLatitudes() != null) {
-                latitude = user.getLocation().getLatitudes().doubleValue();
-            }
-            if (user.getLocation().getLongitudes() != null) {
-                longitude = user.getLocation().getLongitudes().doubleValue();
-            }
+        boolean hasNext = pendingLikes.size() > normalizedLimit;
+        if (hasNext) {
+            pendingLikes = pendingLikes.subList(0, normalizedLimit);
         }
 
-        // Lấy danh sách sở thích
-        List<InterestDTO> interests = userInterestRepository.findByUserId(user.getId())
-                .stream()
-                .map(userInterest -> InterestDTO.builder()
-                        .id(userInterest.getInterest().getId())
-                        .name(userInterest.getInterest().getName())
-                        .build())
-                .collect(Collectors.toList());
-
-        // Lấy danh sách pets
-        List<PetDTO> pets = userPetRepository.findByUserId(user.getId())
-                .stream()
-                .map(userPet -> PetDTO.builder()
-                        .id(userPet.getPet().getId())
-                        .name(userPet.getPet().getName())
-                        .build())
-                .collect(Collectors.toList());
-
-        return ReceivedLikeDTO.builder()
-                .userId(user.getId())
-                .username(user.getActualUsername())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .dateOfBirth(profile != null ? profile.getDateOfBirth() : null)
-                .age(age)
-                .height(profile != null ? profile.getHeight() : null)
-                .sex(profile != null ? profile.getSex() : null)
-                .bio(profile != null ? profile.getBio() : null)
-                .location(location)
-                .latitude(latitude)
-                .longitude(longitude)
-                .interests(interests)
-                .pets(pets)
-                .photos(photos)
-                .likedAt(likedAt)
+        List<ReceivedLikeDTO> receivedLikes = profileCardAssembler.toReceivedLikes(pendingLikes);
+        return CursorPaginationResponse.<ReceivedLikeDTO>builder()
+                .data(receivedLikes)
+                .nextCursor(pendingLikes.isEmpty() ? null : pendingLikes.get(pendingLikes.size() - 1).getId())
+                .hasNext(hasNext)
+                .count(receivedLikes.size())
                 .build();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.amoura.module.matching.service;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Tìm N ứng viên đủ điều kiện gần nhất trong bán kính R km quanh một toạ độ
+ */
+public interface NearbyCandidateSearch {
+
+    /**
+     * @return danh sách user id sắp xếp theo khoảng cách tăng dần
+     */
+    List<Long> findNearest(Long userId, double latitude, double longitude, double radiusKm,
+                           LongPredicate excluded, int limit);
+}
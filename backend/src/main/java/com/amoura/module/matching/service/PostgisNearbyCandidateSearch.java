@@ -0,0 +1,52 @@
+package com.amoura.module.matching.service;
+
+import com.amoura.module.matching.repository.CandidateRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Tìm kiếm theo khoảng cách bằng cột geography của PostGIS (chỉ mục GiST, KNN {@code <->}).
+ * Cần bật {@code app.matching.geo-search=postgis} và database có PostGIS khi chạy migration V24.
+ */
+@Component
+@ConditionalOnProperty(name = "app.matching.geo-search", havingValue = "postgis")
+@RequiredArgsConstructor
+public class PostgisNearbyCandidateSearch implements NearbyCandidateSearch {
+
+    // Bộ lọc loại trừ nằm trong JVM nên lấy dư mỗi trang, và đọc thêm trang nếu vẫn chưa đủ
+    private static final int OVERFETCH_FACTOR = 2;
+    private static final int MIN_PAGE_SIZE = 20;
+    private static final int MAX_PAGES = 5;
+
+    private final CandidateRepository candidateRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> findNearest(Long userId, double latitude, double longitude, double radiusKm,
+                                  LongPredicate excluded, int limit) {
+        List<Long> result = new ArrayList<>(limit);
+        int pageSize = Math.max(limit * OVERFETCH_FACTOR, MIN_PAGE_SIZE);
+        for (int page = 0; page < MAX_PAGES && result.size() < limit; page++) {
+            List<Long> ids = candidateRepository.findNearestCandidateIds(
+                    userId, latitude, longitude, radiusKm * 1000, page * pageSize, pageSize);
+            for (Long id : ids) {
+                if (!excluded.test(id)) {
+                    result.add(id);
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            if (ids.size() < pageSize) {
+                break;
+            }
+        }
+        return result;
+    }
+}
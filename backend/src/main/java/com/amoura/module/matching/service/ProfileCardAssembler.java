@@ -0,0 +1,186 @@
+package com.amoura.module.matching.service;
+
+import com.amoura.module.matching.dto.ReceivedLikeDTO;
+import com.amoura.module.matching.dto.UserRecommendationDTO;
+import com.amoura.module.matching.repository.CandidateRepository;
+import com.amoura.module.matching.repository.CardUserProjection;
+import com.amoura.module.matching.repository.ReceivedLikeProjection;
+import com.amoura.module.profile.domain.Location;
+import com.amoura.module.profile.domain.Photo;
+import com.amoura.module.profile.domain.Profile;
+import com.amoura.module.profile.dto.InterestDTO;
+import com.amoura.module.profile.dto.PetDTO;
+import com.amoura.module.profile.dto.PhotoDTO;
+import com.amoura.module.profile.repository.LocationRepository;
+import com.amoura.module.profile.repository.PhotoRepository;
+import com.amoura.module.profile.repository.ProfileRepository;
+import com.amoura.module.profile.repository.UserInterestRepository;
+import com.amoura.module.profile.repository.UserPetRepository;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng thẻ hồ sơ (recommendation / received like) cho nhiều user cùng lúc.
+ * Mỗi lần gọi chỉ tốn một số truy vấn cố định (user, profile, sở thích, thú cưng, ảnh, vị trí)
+ * thay vì 5+ truy vấn cho từng thẻ. Đầu vào là danh sách id: không dựng entity User, vì quan hệ
+ * profile / location phía mappedBy của User luôn bị nạp thêm một truy vấn mỗi dòng.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProfileCardAssembler {
+
+    private final ProfileRepository profileRepository;
+    private final UserInterestRepository userInterestRepository;
+    private final UserPetRepository userPetRepository;
+    private final PhotoRepository photoRepository;
+    private final LocationRepository locationRepository;
+    private final CandidateRepository candidateRepository;
+
+    /**
+     * Dựng thẻ theo đúng thứ tự {@code userIds}; id không còn tồn tại bị bỏ qua.
+     */
+    public List<UserRecommendationDTO> toRecommendations(List<Long> userIds) {
+        CardData data = load(new LinkedHashSet<>(userIds));
+
+        return userIds.stream()
+                .map(userId -> toCard(userId, data))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    public List<ReceivedLikeDTO> toReceivedLikes(List<ReceivedLikeProjection> likes) {
+        CardData data = load(likes.stream().map(ReceivedLikeProjection::getInitiatorId).collect(Collectors.toSet()));
+
+        return likes.stream()
+                .map(like -> toReceivedLike(like, data))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private CardData load(Set<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return new CardData(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+                    Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        Map<Long, CardUserProjection> users = candidateRepository.findCardUsersByIdIn(userIds).stream()
+                .collect(Collectors.toMap(CardUserProjection::getUserId, Function.identity()));
+
+        Map<Long, Profile> profiles = profileRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(Profile::getUserId, Function.identity()));
+
+        Map<Long, Location> locations = locationRepository.findByUserIdIn(userIds).stream()
+                .collect(Collectors.toMap(Location::getUserId, Function.identity()));
+
+        Map<Long, List<InterestDTO>> interests = userInterestRepository.findWithInterestByUserIdIn(userIds).stream()
+                .collect(Collectors.groupingBy(
+                        userInterest -> userInterest.getId().getUserId(),
+                        Collectors.mapping(userInterest -> InterestDTO.builder()
+                                .id(userInterest.getInterest().getId())
+                                .name(userInterest.getInterest().getName())
+                                .build(), Collectors.toList())));
+
+        Map<Long, List<PetDTO>> pets = userPetRepository.findWithPetByUserIdIn(userIds).stream()
+                .collect(Collectors.groupingBy(
+                        userPet -> userPet.getId().getUserId(),
+                        Collectors.mapping(userPet -> PetDTO.builder()
+                                .id(userPet.getPet().getId())
+                                .name(userPet.getPet().getName())
+                                .build(), Collectors.toList())));
+
+        Map<Long, List<PhotoDTO>> photos = photoRepository.findByUserIdIn(userIds).stream()
+                .collect(Collectors.groupingBy(
+                        photo -> photo.getUser().getId(),
+                        Collectors.mapping(this::toPhotoDTO, Collectors.toList())));
+
+        return new CardData(users, profiles, locations, interests, pets, photos);
+    }
+
+    // Bộ dựng dùng chung cho mọi loại thẻ; null nếu user không còn tồn tại
+    private UserRecommendationDTO toCard(Long userId, CardData data) {
+        CardUserProjection user = data.users.get(userId);
+        if (user == null) {
+            return null;
+        }
+        Profile profile = data.profiles.get(userId);
+        Location location = data.locations.get(userId);
+
+        return UserRecommendationDTO.builder()
+                .userId(userId)
+                .username(user.getUsername())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .dateOfBirth(profile != null ? profile.getDateOfBirth() : null)
+                .age(calculateAge(profile))
+                .height(profile != null ? profile.getHeight() : null)
+                .sex(profile != null ? profile.getSex() : null)
+                .bio(profile != null ? profile.getBio() : null)
+                .location(formatLocation(location))
+                .latitude(location != null && location.getLatitudes() != null ? location.getLatitudes().doubleValue() : null)
+                .longitude(location != null && location.getLongitudes() != null ? location.getLongitudes().doubleValue() : null)
+                .interests(data.interests.getOrDefault(userId, Collections.emptyList()))
+                .pets(data.pets.getOrDefault(userId, Collections.emptyList()))
+                .photos(data.photos.getOrDefault(userId, Collections.emptyList()))
+                .build();
+    }
+
+    // Thẻ like nhận được = thẻ hồ sơ + thời điểm like
+    private ReceivedLikeDTO toReceivedLike(ReceivedLikeProjection like, CardData data) {
+        UserRecommendationDTO card = toCard(like.getInitiatorId(), data);
+        if (card == null) {
+            return null;
+        }
+        ReceivedLikeDTO receivedLike = new ReceivedLikeDTO();
+        BeanUtils.copyProperties(card, receivedLike);
+        receivedLike.setLikedAt(like.getCreatedAt());
+        return receivedLike;
+    }
+
+    private Integer calculateAge(Profile profile) {
+        if (profile == null || profile.getDateOfBirth() == null) {
+            return null;
+        }
+        return Period.between(profile.getDateOfBirth(), LocalDate.now()).getYears();
+    }
+
+    private String formatLocation(Location location) {
+        if (location == null) {
+            return "Unknown";
+        }
+        return String.format("%s, %s",
+                location.getCity() != null ? location.getCity() : "",
+                location.getCountry() != null ? location.getCountry() : "");
+    }
+
+    private PhotoDTO toPhotoDTO(Photo photo) {
+        return PhotoDTO.builder()
+                .id(photo.getId())
+                .url(photo.getPath())
+                .type(photo.getType())
+                .uploadedAt(photo.getCreatedAt())
+                .build();
+    }
+
+    @AllArgsConstructor
+    private static class CardData {
+        private final Map<Long, CardUserProjection> users;
+        private final Map<Long, Profile> profiles;
+        private final Map<Long, Location> locations;
+        private final Map<Long, List<InterestDTO>> interests;
+        private final Map<Long, List<PetDTO>> pets;
+        private final Map<Long, List<PhotoDTO>> photos;
+    }
+}
@@ -0,0 +1,214 @@
+package com.amoura.module.matching.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+
+/**
+ * "Bộ bài" gợi ý dựng sẵn cho từng user: danh sách id ứng viên theo thứ tự xếp hạng.
+ * Request gợi ý chỉ đọc từ bộ bài; mỗi swipe lấy ứng viên ra khỏi bộ bài và khi số còn lại
+ * xuống dưới ngưỡng thì bộ bài được bổ sung nền (AI service trước, chỉ mục ứng viên sau),
+ * nên độ trễ của AI service không nằm trên luồng request.
+ * Số user thường trú bị giới hạn bởi LRU.
+ */
+@Component
+@Slf4j
+public class RecommendationDeckCache {
+
+    private final AIServiceClient aiServiceClient;
+    private final CandidateIndex candidateIndex;
+    private final SwipedSetCache swipedSetCache;
+    private final TaskExecutor refillExecutor;
+    private final int deckSize;
+    private final int lowWaterMark;
+    private final Map<Long, Deck> decks;
+
+    public RecommendationDeckCache(AIServiceClient aiServiceClient,
+                                   CandidateIndex candidateIndex,
+                                   SwipedSetCache swipedSetCache,
+                                   @Qualifier("aiServiceExecutor") TaskExecutor aiServiceExecutor,
+                                   @Value("${app.matching.deck.max-users:10000}") int maxUsers,
+                                   @Value("${app.matching.deck.size:60}") int deckSize,
+                                   @Value("${app.matching.deck.low-water-mark:20}") int lowWaterMark) {
+        this.aiServiceClient = aiServiceClient;
+        this.candidateIndex = candidateIndex;
+        this.swipedSetCache = swipedSetCache;
+        this.refillExecutor = aiServiceExecutor;
+        this.deckSize = deckSize;
+        this.lowWaterMark = lowWaterMark;
+        this.decks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Deck> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Trả về tối đa {@code limit} id đầu bộ bài (không lấy ra), bỏ qua người đã swipe hoặc không còn hoạt động.
+     * Nếu user chưa có bộ bài thì trả về danh sách rỗng và bắt đầu dựng nền.
+     */
+    public List<Long> peek(Long userId, int limit, LongPredicate alreadySwiped) {
+        Deck deck = getOrCreate(userId);
+        List<Long> result = deck.peek(limit, id -> alreadySwiped.test(id) || !isActive(id));
+        if (deck.size() < lowWaterMark) {
+            scheduleRefill(userId, deck);
+        }
+        return result;
+    }
+
+    /**
+     * Lấy ứng viên đã được swipe ra khỏi bộ bài, sau khi transaction commit.
+     */
+    public void consume(Long userId, Long targetUserId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeFromDeck(userId, targetUserId);
+                }
+            });
+        } else {
+            removeFromDeck(userId, targetUserId);
+        }
+    }
+
+    public void evict(Long userId) {
+        synchronized (decks) {
+            decks.remove(userId);
+        }
+    }
+
+    public int remaining(Long userId) {
+        Deck deck;
+        synchronized (decks) {
+            deck = decks.get(userId);
+        }
+        return deck != null ? deck.size() : 0;
+    }
+
+    private void removeFromDeck(Long userId, Long targetUserId) {
+        Deck deck;
+        synchronized (decks) {
+            deck = decks.get(userId);
+        }
+        if (deck == null) {
+            return;
+        }
+        deck.remove(targetUserId);
+        if (deck.size() < lowWaterMark) {
+            scheduleRefill(userId, deck);
+        }
+    }
+
+    private Deck getOrCreate(Long userId) {
+        synchronized (decks) {
+            return decks.computeIfAbsent(userId, id -> new Deck());
+        }
+    }
+
+    private void scheduleRefill(Long userId, Deck deck) {
+        if (!deck.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    refill(userId, deck);
+                } finally {
+                    deck.refilling.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Thread pool đầy: bỏ qua lần này, lần đọc/swipe sau sẽ thử lại
+            deck.refilling.set(false);
+            log.debug("Skipped deck refill for user {}: executor is saturated", userId);
+        }
+    }
+
+    void refill(Long userId, Deck deck) {
+        int needed = deckSize - deck.size();
+        if (needed <= 0) {
+            return;
+        }
+        LongPredicate alreadySwiped = swipedSetCache.exclusionFor(userId);
+        LongPredicate skip = id -> id == userId || alreadySwiped.test(id) || deck.contains(id);
+
+        // Ưu tiên kết quả xếp hạng của AI service; circuit breaker trả về rỗng khi service lỗi
+        List<Long> fresh = new ArrayList<>(needed);
+        for (Long id : aiServiceClient.getPotentialMatches(userId, deckSize)) {
+            if (fresh.size() >= needed) {
+                break;
+            }
+            if (id != null && !skip.test(id) && isActive(id) && !fresh.contains(id)) {
+                fresh.add(id);
+            }
+        }
+
+        if (fresh.size() < needed) {
+            fresh.addAll(candidateIndex.findCandidates(userId,
+                    id -> skip.test(id) || fresh.contains(id), needed - fresh.size()));
+        }
+
+        deck.addAll(fresh);
+        log.debug("Refilled recommendation deck for user {} with {} candidates", userId, fresh.size());
+    }
+
+    private boolean isActive(long userId) {
+        CandidateIndex.Entry entry = candidateIndex.get(userId);
+        return entry != null && entry.isActive();
+    }
+
+    static final class Deck {
+        private final LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+        synchronized List<Long> peek(int limit, LongPredicate stale) {
+            if (ids.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Long> result = new ArrayList<>(Math.min(limit, ids.size()));
+            Iterator<Long> iterator = ids.iterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                Long id = iterator.next();
+                if (stale.test(id)) {
+                    iterator.remove();
+                } else {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        synchronized void addAll(List<Long> candidateIds) {
+            ids.addAll(candidateIds);
+        }
+
+        synchronized void remove(Long userId) {
+            ids.remove(userId);
+        }
+
+        synchronized boolean contains(long userId) {
+            return ids.contains(userId);
+        }
+
+        synchronized int size() {
+            return ids.size();
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.amoura.module.matching.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ghi swipe "dislike" theo kiểu write-behind: request được trả về ngay, swipe được ghi vào
+ * nhật ký cục bộ (append-only) rồi đưa vào hàng đợi, một luồng nền gom theo lô và insert bằng JDBC batch.
+ * <ul>
+ *   <li>Nhật ký chỉ được xoá khi hàng đợi đã ghi hết xuống database</li>
+ *   <li>Khi khởi động, nhật ký còn sót (do crash) được phát lại; insert bỏ qua cặp đã tồn tại nên phát lại an toàn.
+ *       Phát lại lỗi không chặn khởi động: phần chưa ghi được thử lại ở nền, nhật ký được giữ nguyên</li>
+ *   <li>Lô lỗi được ghi lại từng dòng; dòng vi phạm ràng buộc (vd. target đã bị xoá) được chuyển sang
+ *       file dead-letter thay vì chặn cả hàng đợi</li>
+ *   <li>Khi tắt ứng dụng, hàng đợi được xả hết trước khi đóng</li>
+ * </ul>
+ * Chỉ bật khi {@code app.matching.swipe-ingestion=write-behind}.
+ */
+@Component
+@Slf4j
+public class SwipeWriteBehindQueue {
+
+    private static final String INSERT_SWIPE_SQL =
+            "INSERT INTO swipes (initiator, target_user, is_like, created_at) " +
+            "SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM swipes WHERE initiator = ? AND target_user = ?)";
+    // Thời gian tối đa request đồng bộ chờ luồng nền ghi một swipe còn trong hàng đợi
+    private static final long AWAIT_WRITTEN_TIMEOUT_MS = 2000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Path logPath;
+    private final Path deadLetterPath;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<PendingSwipe> queue;
+
+    // Bảo vệ thứ tự "ghi nhật ký rồi mới vào hàng đợi" và việc xoá nhật ký
+    private final Object appendLock = new Object();
+    private FileChannel logChannel;
+    private ScheduledExecutorService flusher;
+    private List<PendingSwipe> failedBatch = new ArrayList<>();
+    // Các cặp (initiator:target) đã nhận nhưng chưa ghi xuống database
+    private final Set<String> pendingPairs = ConcurrentHashMap.newKeySet();
+    private Counter writtenCounter;
+    private Counter deadLetterCounter;
+
+    public SwipeWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.matching.swipe-ingestion:sync}") String ingestionMode,
+                                 @Value("${app.matching.swipe-log.path:${user.dir}/data/swipe-ingest.log}") String logPath,
+                                 @Value("${app.matching.swipe-log.batch-size:500}") int batchSize,
+                                 @Value("${app.matching.swipe-log.flush-interval-ms:200}") long flushIntervalMs,
+                                 @Value("${app.matching.swipe-log.capacity:50000}") int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = "write-behind".equalsIgnoreCase(ingestionMode);
+        this.logPath = Paths.get(logPath);
+        this.deadLetterPath = Paths.get(logPath + ".dead");
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(logPath.toAbsolutePath().getParent());
+        try {
+            replayLog();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to replay swipe log {}, remaining swipes will be retried in background: {}",
+                    logPath, e.getMessage());
+        }
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        Gauge.builder("amoura.swipes.write_behind.queue_depth", queue, BlockingQueue::size)
+                .description("Swipes waiting to be written to the database")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("amoura.swipes.write_behind.written")
+                .description("Swipes written by the write-behind pipeline")
+                .register(meterRegistry);
+        deadLetterCounter = Counter.builder("amoura.swipes.write_behind.dead_lettered")
+                .description("Swipes rejected by the database and moved to the dead-letter file")
+                .register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "swipe-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Swipe write-behind enabled, log at {}", logPath);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled || flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Swipe writer did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Xả nốt hàng đợi; nếu database lỗi thì nhật ký vẫn còn để phát lại ở lần khởi động sau
+        try {
+            while (flush() > 0) {
+                // tiếp tục đến khi hết
+            }
+        } catch (Exception e) {
+            log.error("Failed to drain swipe queue on shutdown, {} swipes kept in {}: {}",
+                    queue.size() + failedBatch.size(), logPath, e.getMessage());
+        }
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close swipe log: {}", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Ghi nhận một swipe chờ ghi. Trả về false nếu hàng đợi đầy hoặc không ghi được nhật ký,
+     * khi đó nơi gọi phải ghi đồng bộ.
+     */
+    public boolean offer(Long initiatorId, Long targetUserId, boolean isLike) {
+        if (!enabled) {
+            return false;
+        }
+        PendingSwipe swipe = new PendingSwipe(initiatorId, targetUserId, isLike, System.currentTimeMillis());
+        synchronized (appendLock) {
+            if (queue.remainingCapacity() == 0) {
+                return false;
+            }
+            try {
+                logChannel.write(ByteBuffer.wrap(swipe.toLogLine().getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                log.error("Failed to append swipe to log: {}", e.getMessage());
+                return false;
+            }
+            queue.add(swipe);
+            pendingPairs.add(swipe.pairKey());
+        }
+        return true;
+    }
+
+    /**
+     * Nếu cặp còn đang chờ ghi thì cho luồng nền ghi ngay và chờ xong, để luồng đồng bộ thấy được swipe đó.
+     * Trả về false nếu cặp vẫn chưa được ghi (database lỗi hoặc hết thời gian chờ).
+     */
+    public boolean awaitWritten(Long initiatorId, Long targetUserId) {
+        String key = PendingSwipe.pairKey(initiatorId, targetUserId);
+        if (!enabled || !pendingPairs.contains(key)) {
+            return true;
+        }
+        try {
+            flusher.submit(() -> {
+                while (pendingPairs.contains(key) && flush() > 0) {
+                    // tiếp tục đến khi cặp được ghi
+                }
+            }).get(AWAIT_WRITTEN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            log.warn("Failed to write pending swipe {} -> {}: {}", initiatorId, targetUserId, e.getMessage());
+        }
+        return !pendingPairs.contains(key);
+    }
+
+    /**
+     * Ghi một lô xuống database, trả về số swipe đã ghi.
+     */
+    int flush() {
+        List<PendingSwipe> batch = failedBatch;
+        failedBatch = new ArrayList<>();
+        queue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+
+        if (batch.isEmpty()) {
+            truncateLogIfDrained();
+            return 0;
+        }
+
+        int written;
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SWIPE_SQL, batch, batch.size(), (ps, swipe) -> {
+                ps.setLong(1, swipe.getInitiatorId());
+                ps.setLong(2, swipe.getTargetUserId());
+                ps.setBoolean(3, swipe.isLike());
+                ps.setTimestamp(4, Timestamp.valueOf(swipe.createdAt()));
+                ps.setLong(5, swipe.getInitiatorId());
+                ps.setLong(6, swipe.getTargetUserId());
+            });
+            batch.forEach(swipe -> pendingPairs.remove(swipe.pairKey()));
+            written = batch.size();
+            if (writtenCounter != null) {
+                writtenCounter.increment(written);
+            }
+        } catch (RuntimeException e) {
+            // Một dòng lỗi làm hỏng cả lô: ghi lại từng dòng để tách dòng lỗi ra
+            log.warn("Swipe batch of {} failed, retrying row by row: {}", batch.size(), e.getMessage());
+            written = writeRowByRow(batch);
+        }
+
+        truncateLogIfDrained();
+        return written;
+    }
+
+    private int writeRowByRow(List<PendingSwipe> batch) {
+        int written = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingSwipe swipe = batch.get(i);
+            try {
+                jdbcTemplate.update(INSERT_SWIPE_SQL, swipe.getInitiatorId(), swipe.getTargetUserId(), swipe.isLike(),
+                        Timestamp.valueOf(swipe.createdAt()), swipe.getInitiatorId(), swipe.getTargetUserId());
+                written++;
+                if (writtenCounter != null) {
+                    writtenCounter.increment();
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Thử lại cũng không thành công: chuyển sang dead-letter
+                deadLetter(swipe, e);
+            } catch (RuntimeException e) {
+                // Lỗi tạm thời (mất kết nối...): giữ phần chưa ghi để thử lại ở lần sau
+                failedBatch = new ArrayList<>(batch.subList(i, batch.size()));
+                throw e;
+            }
+            pendingPairs.remove(swipe.pairKey());
+        }
+        return written;
+    }
+
+    private void deadLetter(PendingSwipe swipe, DataIntegrityViolationException e) {
+        log.error("Dropping swipe {} -> {} rejected by database: {}",
+                swipe.getInitiatorId(), swipe.getTargetUserId(), e.getMostSpecificCause().getMessage());
+        if (deadLetterCounter != null) {
+            deadLetterCounter.increment();
+        }
+        try {
+            Files.write(deadLetterPath, swipe.toLogLine().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ioe) {
+            log.warn("Failed to append swipe to dead-letter file {}: {}", deadLetterPath, ioe.getMessage());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to write swipe batch, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void truncateLogIfDrained() {
+        synchronized (appendLock) {
+            if (!queue.isEmpty() || !failedBatch.isEmpty() || logChannel == null) {
+                return;
+            }
+            try {
+                if (logChannel.size() > 0) {
+                    logChannel.truncate(0);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to truncate swipe log: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void replayLog() throws IOException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(logPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Không đọc được: giữ file sang một bên để xử lý tay, nhật ký mới bắt đầu từ đầu
+            Path kept = logPath.resolveSibling(logPath.getFileName() + ".unreplayed-" + System.currentTimeMillis());
+            Files.move(logPath, kept);
+            throw new IOException("Unreadable swipe log moved to " + kept + ": " + e.getMessage(), e);
+        }
+        List<PendingSwipe> swipes = new ArrayList<>();
+        for (String line : lines) {
+            PendingSwipe swipe = PendingSwipe.fromLogLine(line);
+            if (swipe != null) {
+                swipes.add(swipe);
+                pendingPairs.add(swipe.pairKey());
+            }
+        }
+        int replayed = 0;
+        for (int from = 0; from < swipes.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, swipes.size());
+            failedBatch.addAll(swipes.subList(from, to));
+            try {
+                replayed += flush();
+            } catch (RuntimeException e) {
+                // Phần chưa ghi được giữ lại cho luồng nền; nhật ký chỉ bị xoá khi đã ghi hết
+                failedBatch.addAll(swipes.subList(to, swipes.size()));
+                throw e;
+            }
+        }
+        Files.write(logPath, new byte[0]);
+        if (replayed > 0) {
+            log.info("Replayed {} swipes from {}", replayed, logPath);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class PendingSwipe {
+        private final long initiatorId;
+        private final long targetUserId;
+        private final boolean like;
+        private final long createdAtMillis;
+
+        LocalDateTime createdAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis), ZoneId.systemDefault());
+        }
+
+        String pairKey() {
+            return pairKey(initiatorId, targetUserId);
+        }
+
+        static String pairKey(long initiatorId, long targetUserId) {
+            return initiatorId + ":" + targetUserId;
+        }
+
+        String toLogLine() {
+            return initiatorId + "," + targetUserId + "," + like + "," + createdAtMillis + "\n";
+        }
+
+        static PendingSwipe fromLogLine(String line) {
+            String[] parts = line.trim().split(",");
+            if (parts.length != 4) {
+                // Dòng ghi dở do crash giữa chừng
+                return null;
+            }
+            try {
+                return new PendingSwipe(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                        Boolean.parseBoolean(parts[2]), Long.parseLong(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.amoura.module.matching.service;
+
+import com.amoura.module.matching.repository.SwipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongPredicate;
+
+/**
+ * Tập id đã swipe của từng user, lưu dưới dạng bitmap nén (Roaring) để kiểm tra loại trừ O(1).
+ * Bitmap được dựng lại lười từ bảng swipes khi cần và cập nhật mỗi khi user swipe.
+ * Số user thường trú bị giới hạn bởi LRU để bộ nhớ không tăng vô hạn.
+ * Trong lúc đang nạp một user, swipe mới commit được giữ lại và áp lên bitmap trước khi đưa vào cache,
+ * để không mất swipe nào xảy ra giữa lúc truy vấn và lúc cache.
+ */
+@Component
+@Slf4j
+public class SwipedSetCache {
+
+    private final SwipeRepository swipeRepository;
+    private final Map<Long, Roaring64Bitmap> bitmaps;
+    // User đang được nạp từ database; đọc/ghi dưới khoá của bitmaps
+    private final Map<Long, PendingLoad> loading = new HashMap<>();
+
+    public SwipedSetCache(SwipeRepository swipeRepository,
+                          @Value("${app.matching.swiped-cache.max-users:10000}") int maxUsers) {
+        this.swipeRepository = swipeRepository;
+        this.bitmaps = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Roaring64Bitmap> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Trả về predicate "đã swipe" cho user, dựng bitmap từ database nếu chưa có trong cache.
+     */
+    public LongPredicate exclusionFor(Long userId) {
+        Roaring64Bitmap bitmap = getOrLoad(userId);
+        return targetUserId -> {
+            synchronized (bitmap) {
+                return bitmap.contains(targetUserId);
+            }
+        };
+    }
+
+    public boolean hasSwiped(Long userId, Long targetUserId) {
+        return exclusionFor(userId).test(targetUserId);
+    }
+
+    /**
+     * Ghi nhận một swipe mới. Chỉ cập nhật bitmap sau khi transaction commit;
+     * user chưa có trong cache sẽ được dựng đầy đủ từ database ở lần đọc sau.
+     */
+    public void recordSwipe(Long userId, Long targetUserId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addIfResident(userId, targetUserId);
+                }
+            });
+        } else {
+            addIfResident(userId, targetUserId);
+        }
+    }
+
+    public void evict(Long userId) {
+        synchronized (bitmaps) {
+            bitmaps.remove(userId);
+        }
+    }
+
+    public int residentUsers() {
+        synchronized (bitmaps) {
+            return bitmaps.size();
+        }
+    }
+
+    private void addIfResident(Long userId, Long targetUserId) {
+        Roaring64Bitmap bitmap;
+        synchronized (bitmaps) {
+            bitmap = bitmaps.get(userId);
+            if (bitmap == null) {
+                PendingLoad pending = loading.get(userId);
+                if (pending != null) {
+                    pending.deltas.add(targetUserId);
+                }
+                return;
+            }
+        }
+        synchronized (bitmap) {
+            bitmap.addLong(targetUserId);
+        }
+    }
+
+    private Roaring64Bitmap getOrLoad(Long userId) {
+        PendingLoad pending;
+        boolean owner = false;
+        synchronized (bitmaps) {
+            Roaring64Bitmap cached = bitmaps.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            pending = loading.get(userId);
+            if (pending == null) {
+                pending = new PendingLoad();
+                loading.put(userId, pending);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            // Một luồng khác đang nạp user này: chờ kết quả thay vì truy vấn lần nữa
+            return pending.result.join();
+        }
+
+        // Truy vấn ngoài lock để không chặn các user khác
+        Roaring64Bitmap loaded = new Roaring64Bitmap();
+        try {
+            for (Long targetUserId : swipeRepository.findTargetUserIdsByInitiatorId(userId)) {
+                loaded.addLong(targetUserId);
+            }
+        } catch (RuntimeException e) {
+            synchronized (bitmaps) {
+                loading.remove(userId);
+            }
+            pending.result.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (bitmaps) {
+            // Áp các swipe commit trong lúc đang truy vấn rồi mới đưa bitmap vào cache
+            for (Long targetUserId : pending.deltas) {
+                loaded.addLong(targetUserId);
+            }
+            loaded.runOptimize();
+            loading.remove(userId);
+            bitmaps.put(userId, loaded);
+        }
+        pending.result.complete(loaded);
+        log.debug("Loaded swiped set for user {} with {} entries", userId, loaded.getLongCardinality());
+        return loaded;
+    }
+
+    private static final class PendingLoad {
+        final List<Long> deltas = new ArrayList<>();
+        final CompletableFuture<Roaring64Bitmap> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,13 @@
+package com.amoura.module.profile.repository;
+
+import com.amoura.module.profile.domain.Location;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LocationRepository extends JpaRepository<Location, Long> {
+    List<Location> findByUserIdIn(Collection<Long> userIds);
+}
@@ -2,12 +2,18 @@ package com.amoura.module.profile.repository;
 
 import com.amoura.module.profile.domain.UserInterest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserInterestRepository extends JpaRepository<UserInterest, UserInterest.UserInterestId> {
     List<UserInterest> findByUserId(Long userId);
     void deleteByUserId(Long userId);
-} 
\ No newline at end of file
+
+    @Query("SELECT ui FROM UserInterest ui JOIN FETCH ui.interest WHERE ui.id.userId IN :userIds")
+    List<UserInterest> findWithInterestByUserIdIn(@Param("userIds") Collection<Long> userIds);
+}
@@ -2,12 +2,18 @@ package com.amoura.module.profile.repository;
 
 import com.amoura.module.profile.domain.UserPet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserPetRepository extends JpaRepository<UserPet, UserPet.UserPetId> {
     List<UserPet> findByUserId(Long userId);
     void deleteByUserId(Long userId);
-} 
\ No newline at end of file
+
+    @Query("SELECT up FROM UserPet up JOIN FETCH up.pet WHERE up.id.userId IN :userIds")
+    List<UserPet> findWithPetByUserIdIn(@Param("userIds") Collection<Long> userIds);
+}
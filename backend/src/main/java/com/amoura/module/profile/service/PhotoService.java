@@ -9,6 +9,7 @@ public interface PhotoService {
     // Avatar methods
     PhotoDTO getUserAvatar(String email);
     PhotoDTO getUserAvatarById(Long userId);
+    String getUserAvatarUrl(Long userId);
     PhotoDTO uploadAvatar(String email, MultipartFile file);
     void deleteAvatar(String email);
 
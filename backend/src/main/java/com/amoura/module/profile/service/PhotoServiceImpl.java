@@ -1,24 +1,32 @@
 package com.amoura.module.profile.service;
 
 import com.amoura.common.exception.ApiException;
+import com.amoura.infrastructure.storage.ContentAddressedFileStorage;
 import com.amoura.module.profile.domain.Photo;
 import com.amoura.module.profile.dto.PhotoDTO;
 import com.amoura.module.profile.repository.PhotoRepository;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +36,8 @@ public class PhotoServiceImpl implements PhotoService {
 
     private final UserRepository userRepository;
     private final PhotoRepository photoRepository;
+    private final MeterRegistry meterRegistry;
+    private final ContentAddressedFileStorage fileStorage;
 
     @Value("${file.storage.local.upload-dir}")
     private String uploadDir;
@@ -35,11 +45,37 @@ public class PhotoServiceImpl implements PhotoService {
     @Value("${file.storage.local.base-url}")
     private String baseUrl;
 
+    @Value("${app.photo.avatar-cache.max-users:50000}")
+    private int avatarCacheMaxUsers;
+
+    // userId -> avatar (Optional.empty() nếu user chưa có avatar), LRU có giới hạn,
+    // bị xoá khi user tải lên hoặc xoá avatar
+    private Map<Long, Optional<PhotoDTO>> avatarCache;
+    private Counter avatarCacheHits;
+    private Counter avatarCacheMisses;
+
     // Photo limits
     private static final int MAX_AVATAR = 1;
     private static final int MAX_PROFILE_COVER = 1;
     private static final int MAX_HIGHLIGHTS = 4;
 
+    @PostConstruct
+    void initAvatarCache() {
+        avatarCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Optional<PhotoDTO>> eldest) {
+                return size() > avatarCacheMaxUsers;
+            }
+        };
+        avatarCacheHits = meterRegistry.counter("amoura.avatar.cache", "result", "hit");
+        avatarCacheMisses = meterRegistry.counter("amoura.avatar.cache", "result", "miss");
+        meterRegistry.gauge("amoura.avatar.cache.size", avatarCache, cache -> {
+            synchronized (cache) {
+                return cache.size();
+            }
+        });
+    }
+
     // Avatar methods
     @Override
     @Transactional(readOnly = true)
@@ -50,15 +86,23 @@ public class PhotoServiceImpl implements PhotoService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public PhotoDTO getUserAvatarById(Long userId) {
-        return photoRepository.findByUserIdAndType(userId, "avatar")
-                .stream()
-                .findFirst()
-                .map(this::toDTO)
+        // Trả về bản sao để nơi gọi không sửa được dữ liệu trong cache
+        return findCachedAvatar(userId)
+                .map(avatar -> PhotoDTO.builder()
+                        .id(avatar.getId())
+                        .url(avatar.getUrl())
+                        .type(avatar.getType())
+                        .uploadedAt(avatar.getUploadedAt())
+                        .build())
                 .orElse(null);
     }
 
+    @Override
+    public String getUserAvatarUrl(Long userId) {
+        return findCachedAvatar(userId).map(PhotoDTO::getUrl).orElse(null);
+    }
+
     @Override
     @Transactional
     public PhotoDTO uploadAvatar(String email, MultipartFile file) {
@@ -73,7 +117,9 @@ public class PhotoServiceImpl implements PhotoService {
                 "MAX_AVATAR_REACHED");
         }
 
-        return uploadPhoto(user, file, "avatar");
+        PhotoDTO avatar = uploadPhoto(user, file, "avatar");
+        evictAvatar(user.getId());
+        return avatar;
     }
 
     @Override
@@ -82,6 +128,7 @@ public class PhotoServiceImpl implements PhotoService {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "User not found", "USER_NOT_FOUND"));
         deletePhotoByType(user, "avatar");
+        evictAvatar(user.getId());
     }
 
     // Profile cover methods
@@ -214,35 +261,11 @@ public class PhotoServiceImpl implements PhotoService {
         }
 
         try {
-            // Create user directory if it doesn't exist
-            Path userDir = Paths.get(uploadDir, "users", user.getId().toString());
-            if (!Files.exists(userDir)) {
-                Files.createDirectories(userDir);
-            }
-
-            // Generate filename based on type
-            String filename;
-            if ("highlight".equals(type)) {
-                // For highlights, append a number
-                int highlightCount = (int) photoRepository.findByUserIdAndType(user.getId(), type).size();
-                filename = "highlight" + (highlightCount + 1) + getFileExtension(file.getOriginalFilename());
-            } else {
-                // For avatar and profile_cover, use the type as filename
-                filename = type + getFileExtension(file.getOriginalFilename());
-            }
-
-            Path filePath = userDir.resolve(filename);
-
-            // If file exists, delete it (for avatar and profile_cover)
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-            }
-
-            // Save file
-            Files.copy(file.getInputStream(), filePath);
+            // Lưu theo nội dung: ảnh trùng nội dung dùng chung một file
+            String relativePath = fileStorage.store(file.getInputStream(), "users",
+                    getFileExtension(file.getOriginalFilename()));
 
             // Chỉ lưu relative path vào DB
-            String relativePath = "users/" + user.getId() + "/" + filename;
             Photo photo = Photo.builder()
                     .user(user)
                     .path(relativePath)
@@ -267,13 +290,16 @@ public class PhotoServiceImpl implements PhotoService {
 
     private void deletePhoto(Photo photo) {
         try {
-            // Delete file from storage
-            String relativePath = photo.getPath();
-            Path filePath = Paths.get(uploadDir, relativePath);
-            Files.deleteIfExists(filePath);
-
             // Delete photo record
             photoRepository.delete(photo);
+
+            String relativePath = photo.getPath();
+            if (fileStorage.isManaged(relativePath)) {
+                // File dùng chung: chỉ bị xoá khi không còn ảnh nào tham chiếu
+                fileStorage.release(relativePath);
+            } else {
+                Files.deleteIfExists(Paths.get(uploadDir, relativePath));
+            }
         } catch (IOException e) {
             log.error("Failed to delete photo {} for user {}: {}", 
                 photo.getId(), photo.getUser().getId(), e.getMessage());
@@ -282,6 +308,49 @@ public class PhotoServiceImpl implements PhotoService {
         }
     }
 
+    private Optional<PhotoDTO> findCachedAvatar(Long userId) {
+        Optional<PhotoDTO> cached;
+        synchronized (avatarCache) {
+            cached = avatarCache.get(userId);
+        }
+        if (cached != null) {
+            avatarCacheHits.increment();
+            return cached;
+        }
+
+        avatarCacheMisses.increment();
+        Optional<PhotoDTO> loaded = photoRepository.findByUserIdAndType(userId, "avatar")
+                .stream()
+                .findFirst()
+                .map(this::toDTO);
+        synchronized (avatarCache) {
+            avatarCache.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Xoá avatar khỏi cache ngay và một lần nữa sau khi commit, để request đọc xen giữa
+     * không đưa avatar cũ trở lại cache.
+     */
+    private void evictAvatar(Long userId) {
+        removeCachedAvatar(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeCachedAvatar(userId);
+                }
+            });
+        }
+    }
+
+    private void removeCachedAvatar(Long userId) {
+        synchronized (avatarCache) {
+            avatarCache.remove(userId);
+        }
+    }
+
     private PhotoDTO toDTO(Photo photo) {
         String url = null;
         if (photo.getPath() != null && !photo.getPath().isEmpty()) {
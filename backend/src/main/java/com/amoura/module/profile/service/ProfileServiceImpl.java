@@ -1,6 +1,7 @@
 package com.amoura.module.profile.service;
 
 import com.amoura.common.exception.ApiException;
+import com.amoura.module.matching.service.CandidateIndex;
 import com.amoura.module.profile.domain.*;
 import com.amoura.module.profile.dto.*;
 import com.amoura.module.profile.mapper.ProfileMapper;
@@ -41,6 +42,7 @@ public class ProfileServiceImpl implements ProfileService {
     private final UserLanguageRepository userLanguageRepository;
     private final UserPetRepository userPetRepository;
     private final ProfileMapper profileMapper;
+    private final CandidateIndex candidateIndex;
 
     private void validateIds(List<Long> ids, String entityName, Function<Long, Boolean> existsCheck) {
         if (ids != null && !ids.isEmpty()) {
@@ -285,6 +287,8 @@ public class ProfileServiceImpl implements ProfileService {
             userPetRepository.saveAll(userPets);
         }
 
+        candidateIndex.refresh(user.getId());
+
         // Refresh data from database to ensure we have the latest state
         List<UserInterest> interests = userInterestRepository.findByUserId(user.getId());
         List<UserLanguage> languages = userLanguageRepository.findByUserId(user.getId());
@@ -1,10 +1,15 @@
 package com.amoura.module.user.api;
 
+import com.amoura.common.exception.ApiException;
 import com.amoura.module.user.service.OnlineUserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
@@ -12,8 +17,20 @@ public class UserStatusController {
 
     private final OnlineUserService onlineUserService;
 
+    private static final int MAX_PRESENCE_USERS = 200;
+
     @GetMapping("/{userId}/online")
     public ResponseEntity<Boolean> isUserOnline(@PathVariable Long userId) {
         return ResponseEntity.ok(onlineUserService.isOnline(userId));
     }
+
+    // Trạng thái online của nhiều user trong một lần gọi (màn hình hộp thư)
+    @GetMapping("/presence")
+    public ResponseEntity<Map<Long, Boolean>> getPresence(@RequestParam List<Long> userIds) {
+        if (userIds.size() > MAX_PRESENCE_USERS) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_PRESENCE_USERS + " users per request", "TOO_MANY_USERS");
+        }
+        return ResponseEntity.ok(onlineUserService.getPresence(userIds));
+    }
 } 
\ No newline at end of file
@@ -1,47 +1,160 @@
 package com.amoura.module.user.service;
 
+import com.amoura.module.chat.repository.ChatRoomRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.beans.factory.annotation.Autowired;
-import com.amoura.module.chat.repository.ChatRoomRepository;
-import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Trạng thái online theo user, đếm theo từng phiên WebSocket (một user có thể mở nhiều thiết bị).
+ * <ul>
+ *   <li>User chỉ ONLINE/OFFLINE khi phiên đầu tiên mở ra / phiên cuối cùng đóng lại</li>
+ *   <li>OFFLINE được hoãn {@code offlineGraceMs}; kết nối lại trong khoảng đó thì không phát gì</li>
+ *   <li>Danh sách phòng chat của user được cache khi user online, payload trạng thái chỉ serialize một lần mỗi lần phát</li>
+ * </ul>
+ */
 @Service
+@Slf4j
 public class OnlineUserService {
-    private final Set<Long> onlineUsers = ConcurrentHashMap.newKeySet();
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatRoomRepository chatRoomRepository;
+    private final ObjectMapper objectMapper;
+    private final long offlineGraceMs;
 
-    @Autowired
-    private ChatRoomRepository chatRoomRepository;
+    // userId -> các sessionId đang mở
+    private final Map<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+    private final Map<Long, List<Long>> chatRoomIdsByUser = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final ScheduledExecutorService scheduler;
 
-    public void userOnline(Long userId) {
-        onlineUsers.add(userId);
-        broadcastStatusToChatRooms(userId, true);
+    public OnlineUserService(SimpMessagingTemplate messagingTemplate,
+                             ChatRoomRepository chatRoomRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${app.presence.offline-grace-ms:5000}") long offlineGraceMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.chatRoomRepository = chatRoomRepository;
+        this.objectMapper = objectMapper;
+        this.offlineGraceMs = offlineGraceMs;
+        // Một luồng: các lần phát trạng thái của cùng user giữ đúng thứ tự và không chặn luồng WebSocket
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    public void userOffline(Long userId) {
-        onlineUsers.remove(userId);
-        broadcastStatusToChatRooms(userId, false);
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void sessionConnected(Long userId, String sessionId) {
+        boolean becameOnline;
+        synchronized (lock) {
+            Set<String> sessions = sessionsByUser.computeIfAbsent(userId, id -> new HashSet<>());
+            boolean firstSession = sessions.isEmpty();
+            sessions.add(sessionId);
+            ScheduledFuture<?> pending = pendingOffline.remove(userId);
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            // Kết nối lại trong thời gian chờ: người khác vẫn đang thấy user online
+            becameOnline = firstSession && pending == null;
+        }
+        if (becameOnline) {
+            scheduler.execute(() -> broadcastStatusToChatRooms(userId, true));
+        }
+    }
+
+    public void sessionDisconnected(Long userId, String sessionId) {
+        synchronized (lock) {
+            Set<String> sessions = sessionsByUser.get(userId);
+            // Spring có thể phát SessionDisconnectEvent nhiều lần cho cùng một phiên
+            if (sessions == null || !sessions.remove(sessionId) || !sessions.isEmpty()) {
+                return;
+            }
+            ScheduledFuture<?> pending = scheduler.schedule(() -> goOffline(userId), offlineGraceMs, TimeUnit.MILLISECONDS);
+            pendingOffline.put(userId, pending);
+        }
     }
 
     public boolean isOnline(Long userId) {
-        return onlineUsers.contains(userId);
+        // Entry chỉ bị xoá khi hết thời gian chờ OFFLINE, nên user vẫn online trong thời gian chờ
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public Map<Long, Boolean> getPresence(Collection<Long> userIds) {
+        Map<Long, Boolean> presence = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            presence.put(userId, isOnline(userId));
+        }
+        return presence;
     }
 
     public Set<Long> getOnlineUsers() {
-        return onlineUsers;
+        return new HashSet<>(sessionsByUser.keySet());
+    }
+
+    /**
+     * Gọi khi user có phòng chat mới để lần phát trạng thái sau lấy lại danh sách phòng.
+     */
+    public void invalidateChatRooms(Long userId) {
+        chatRoomIdsByUser.remove(userId);
+    }
+
+    private void goOffline(Long userId) {
+        synchronized (lock) {
+            Set<String> sessions = sessionsByUser.get(userId);
+            if (pendingOffline.remove(userId) == null || (sessions != null && !sessions.isEmpty())) {
+                return;
+            }
+            sessionsByUser.remove(userId);
+        }
+        broadcastStatusToChatRooms(userId, false);
+        chatRoomIdsByUser.remove(userId);
     }
 
     private void broadcastStatusToChatRooms(Long userId, boolean online) {
-        // Lấy danh sách các phòng chat mà user này tham gia
-        List<Long> chatRoomIds = chatRoomRepository.findChatRoomIdsByUserId(userId);
-        UserStatusMessage msg = new UserStatusMessage(userId, online ? "ONLINE" : "OFFLINE");
-        for (Long chatRoomId : chatRoomIds) {
-            messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/user-status", msg);
+        try {
+            List<Long> chatRoomIds = chatRoomIdsByUser.computeIfAbsent(userId, chatRoomRepository::findChatRoomIdsByUserId);
+            if (chatRoomIds.isEmpty()) {
+                return;
+            }
+            // Serialize một lần, dùng lại cho mọi phòng
+            byte[] payload = objectMapper.writeValueAsBytes(new UserStatusMessage(userId, online ? "ONLINE" : "OFFLINE"));
+            for (Long chatRoomId : chatRoomIds) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                accessor.setLeaveMutable(true);
+                messagingTemplate.send("/topic/chat/" + chatRoomId + "/user-status",
+                        MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize status of user {}: {}", userId, e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to broadcast status of user {}: {}", userId, e.getMessage());
         }
     }
 
@@ -54,4 +167,4 @@ public class OnlineUserService {
             this.status = status;
         }
     }
-} 
\ No newline at end of file
+}
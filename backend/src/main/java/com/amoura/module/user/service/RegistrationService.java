@@ -2,6 +2,7 @@ package com.amoura.module.user.service;
 
 import com.amoura.common.exception.ApiException;
 import com.amoura.infrastructure.security.JwtTokenProvider;
+import com.amoura.module.matching.service.CandidateIndex;
 import com.amoura.module.profile.domain.Profile;
 import com.amoura.module.profile.repository.ProfileRepository;
 import com.amoura.module.user.domain.RegistrationSession;
@@ -37,6 +38,7 @@ public class RegistrationService {
     private final OtpService otpService;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final CandidateIndex candidateIndex;
 
     @Value("${app.registration.session-timeout}")
     private long sessionTimeoutMs;
@@ -199,6 +201,7 @@ public class RegistrationService {
                 .build();
 
         profileRepository.save(profile);
+        candidateIndex.refresh(savedUser.getId());
 
         // Cập nhật trạng thái phiên
         session.setFirstName(request.getFirstName());
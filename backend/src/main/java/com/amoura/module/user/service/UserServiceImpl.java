@@ -1,6 +1,7 @@
 package com.amoura.module.user.service;
 
 import com.amoura.common.exception.ApiException;
+import com.amoura.module.matching.service.CandidateIndex;
 import com.amoura.module.user.domain.User;
 import com.amoura.module.user.dto.ChangePasswordRequest;
 import com.amoura.module.user.dto.UpdateUserRequest;
@@ -24,6 +25,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CandidateIndex candidateIndex;
 
     @Override
     public UserDTO getUserById(Long id) {
@@ -109,6 +111,7 @@ public class UserServiceImpl implements UserService {
         user.setUpdatedAt(LocalDateTime.now());
 
         userRepository.save(user);
+        candidateIndex.refresh(id);
     }
 
     @Override
@@ -121,6 +124,7 @@ public class UserServiceImpl implements UserService {
         user.setUpdatedAt(LocalDateTime.now());
 
         userRepository.save(user);
+        candidateIndex.refresh(id);
     }
 
     @Override
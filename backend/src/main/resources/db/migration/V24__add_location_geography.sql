@@ -0,0 +1,41 @@
+-- Cột toạ độ PostGIS cho tìm kiếm ứng viên theo khoảng cách (app.matching.geo-search=postgis).
+-- Database không cài được PostGIS (ví dụ image postgres:15 của CI) thì bỏ qua toàn bộ migration này
+-- và dùng app.matching.geo-search=memory.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_available_extensions WHERE name = 'postgis') THEN
+        RAISE NOTICE 'PostGIS is not available, skipping locations.geog';
+        RETURN;
+    END IF;
+
+    CREATE EXTENSION IF NOT EXISTS postgis;
+
+    EXECUTE 'ALTER TABLE locations ADD COLUMN IF NOT EXISTS geog geography(Point, 4326)';
+
+    EXECUTE 'UPDATE locations
+             SET geog = ST_SetSRID(ST_MakePoint(longitudes::double precision, latitudes::double precision), 4326)::geography
+             WHERE latitudes IS NOT NULL AND longitudes IS NOT NULL';
+
+    EXECUTE 'CREATE INDEX IF NOT EXISTS idx_locations_geog ON locations USING GIST (geog)';
+
+    -- Giữ geog đồng bộ với latitudes/longitudes mà không cần sửa entity Location
+    EXECUTE $fn$
+        CREATE OR REPLACE FUNCTION sync_location_geog()
+        RETURNS TRIGGER AS $body$
+        BEGIN
+            IF NEW.latitudes IS NULL OR NEW.longitudes IS NULL THEN
+                NEW.geog = NULL;
+            ELSE
+                NEW.geog = ST_SetSRID(ST_MakePoint(NEW.longitudes::double precision, NEW.latitudes::double precision), 4326)::geography;
+            END IF;
+            RETURN NEW;
+        END;
+        $body$ LANGUAGE plpgsql
+    $fn$;
+
+    EXECUTE 'CREATE TRIGGER trigger_sync_location_geog
+                 BEFORE INSERT OR UPDATE OF latitudes, longitudes ON locations
+                 FOR EACH ROW
+                 EXECUTE FUNCTION sync_location_geog()';
+END;
+$$;
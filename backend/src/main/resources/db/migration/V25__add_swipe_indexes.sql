@@ -0,0 +1,4 @@
+-- Phân trang keyset cho danh sách like nhận được: (target_user, is_like, created_at, id)
+CREATE INDEX IF NOT EXISTS idx_swipes_target_like_created ON swipes(target_user, is_like, created_at, id);
+
+-- Tra cứu theo cặp (initiator, target_user) đã có chỉ mục unique_swipe_pair (V15), không cần thêm chỉ mục
@@ -0,0 +1,5 @@
+-- Tin nhắn cuối của từng phòng trong truy vấn hộp thư (LATERAL ... ORDER BY created_at DESC, id DESC LIMIT 1)
+CREATE INDEX IF NOT EXISTS idx_messages_room_created ON messages(chat_room_id, created_at DESC, id DESC);
+
+-- Avatar của hai bên trong hộp thư
+CREATE INDEX IF NOT EXISTS idx_photos_user_type ON photos(user_id, type);
@@ -0,0 +1,22 @@
+-- Mốc đã đọc theo (phòng, người dùng): mọi tin nhắn của người kia có id <= last_read_message_id coi như đã đọc
+CREATE TABLE chat_read_watermarks (
+    chat_room_id BIGINT NOT NULL REFERENCES chat_rooms(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    last_read_message_id BIGINT NOT NULL,
+    read_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (chat_room_id, user_id)
+);
+
+-- Chuyển trạng thái đã đọc hiện có (messages.is_read) sang mốc của người nhận
+INSERT INTO chat_read_watermarks (chat_room_id, user_id, last_read_message_id, read_at)
+SELECT m.chat_room_id,
+       CASE WHEN m.sender_id = cr.user1_id THEN cr.user2_id ELSE cr.user1_id END,
+       MAX(m.id),
+       COALESCE(MAX(m.read_at), CURRENT_TIMESTAMP)
+FROM messages m
+JOIN chat_rooms cr ON cr.id = m.chat_room_id
+WHERE m.is_read = true
+GROUP BY m.chat_room_id, CASE WHEN m.sender_id = cr.user1_id THEN cr.user2_id ELSE cr.user1_id END;
+
+-- Đếm chưa đọc (id > mốc) và lấy id tin nhắn mới nhất của phòng
+CREATE INDEX IF NOT EXISTS idx_messages_room_id ON messages(chat_room_id, id);
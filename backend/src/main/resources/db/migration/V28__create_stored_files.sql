@@ -0,0 +1,8 @@
+-- File tải lên lưu theo nội dung (SHA-256); ref_count = số bản ghi (ảnh, tin nhắn) đang dùng file
+CREATE TABLE stored_files (
+    path VARCHAR(255) PRIMARY KEY,
+    sha256 CHAR(64) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
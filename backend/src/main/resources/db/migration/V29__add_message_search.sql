@@ -0,0 +1,39 @@
+-- Tìm kiếm tin nhắn: chỉ mục đảo ngược (tsvector + GIN) trên nội dung tin nhắn văn bản
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS search_vector tsvector;
+
+-- Tiếng Việt: mỗi âm tiết là một từ nên dùng cấu hình 'simple' (không stemming, không stop word).
+-- Lưu cả dạng có dấu và không dấu: gõ không dấu tìm được mọi biến thể, gõ có dấu thì khớp chính xác.
+CREATE OR REPLACE FUNCTION message_search_vector(content TEXT)
+RETURNS tsvector AS $$
+BEGIN
+    RETURN to_tsvector('simple', coalesce(content, ''))
+        || to_tsvector('simple', unaccent(coalesce(content, '')));
+END;
+$$ LANGUAGE plpgsql STABLE;
+
+UPDATE messages
+SET search_vector = message_search_vector(content)
+WHERE message_type = 'TEXT' AND recalled IS NOT TRUE;
+
+CREATE INDEX IF NOT EXISTS idx_messages_search_vector ON messages USING GIN (search_vector);
+
+-- Giữ chỉ mục đồng bộ khi gửi / thu hồi tin nhắn mà không cần sửa entity Message;
+-- tin nhắn đã thu hồi bị gỡ khỏi chỉ mục
+CREATE OR REPLACE FUNCTION sync_message_search_vector()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.message_type = 'TEXT' AND NEW.recalled IS NOT TRUE THEN
+        NEW.search_vector = message_search_vector(NEW.content);
+    ELSE
+        NEW.search_vector = NULL;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trigger_sync_message_search_vector
+    BEFORE INSERT OR UPDATE OF content, message_type, recalled ON messages
+    FOR EACH ROW
+    EXECUTE FUNCTION sync_message_search_vector();
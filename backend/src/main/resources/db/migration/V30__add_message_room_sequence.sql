@@ -0,0 +1,25 @@
+-- Số thứ tự tin nhắn trong từng phòng (1, 2, 3, ...) để client phát hiện tin nhắn bị thiếu
+ALTER TABLE chat_rooms ADD COLUMN IF NOT EXISTS last_message_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS room_seq BIGINT;
+
+UPDATE messages m
+SET room_seq = s.seq
+FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY chat_room_id ORDER BY id) AS seq
+    FROM messages
+) s
+WHERE m.id = s.id;
+
+UPDATE chat_rooms cr
+SET last_message_seq = s.max_seq
+FROM (
+    SELECT chat_room_id, MAX(room_seq) AS max_seq FROM messages GROUP BY chat_room_id
+) s
+WHERE cr.id = s.chat_room_id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_messages_room_seq ON messages(chat_room_id, room_seq);
+
+-- updated_at của phòng giờ được cập nhật một lần mỗi lô tin nhắn cùng với last_message_seq (MessageSequencer),
+-- trigger cập nhật theo từng dòng không còn cần thiết
+DROP TRIGGER IF EXISTS trigger_update_chat_room_updated_at ON messages;
+DROP FUNCTION IF EXISTS update_chat_room_updated_at();
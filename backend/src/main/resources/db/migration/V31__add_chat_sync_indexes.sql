@@ -0,0 +1,7 @@
+-- Đồng bộ delta khi client kết nối lại (GET /chat/sync)
+-- Phòng của user thay đổi sau mốc: theo từng phía tham gia
+CREATE INDEX IF NOT EXISTS idx_chat_rooms_user1_updated ON chat_rooms(user1_id, updated_at);
+CREATE INDEX IF NOT EXISTS idx_chat_rooms_user2_updated ON chat_rooms(user2_id, updated_at);
+
+-- Tin nhắn bị thu hồi sau mốc (tin nhắn mới sau mốc dùng idx_messages_room_created)
+CREATE INDEX IF NOT EXISTS idx_messages_room_recalled ON messages(chat_room_id, recalled_at) WHERE recalled_at IS NOT NULL;
@@ -0,0 +1,70 @@
+package com.amoura.common.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ShardedBrokerMessageHandlerTests {
+
+    @Test
+    @DisplayName("Gửi tin nhắn của một phòng đúng thứ tự, chỉ tới session đã subscribe")
+    public void dispatchesInOrderToSubscribersOnly() throws Exception {
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        // Kênh gửi ra có thread pool như cấu hình thật, thứ tự phải được giữ qua nhiều luồng
+        ExecutorService outboundExecutor = Executors.newFixedThreadPool(4);
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel(outboundExecutor);
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        outbound.subscribe(delivered::add);
+
+        ShardedBrokerMessageHandler broker = new ShardedBrokerMessageHandler(
+                inbound, outbound, brokerChannel, new SimpleMeterRegistry(), 4);
+        broker.start();
+
+        inbound.send(frame(SimpMessageType.SUBSCRIBE, "s1", "sub-1", "/topic/chat/1"));
+        inbound.send(frame(SimpMessageType.SUBSCRIBE, "s2", "sub-2", "/topic/chat/2"));
+        inbound.send(frame(SimpMessageType.SUBSCRIBE, "s3", "sub-3", "/queue/other"));
+        for (int i = 0; i < 50; i++) {
+            brokerChannel.send(MessageBuilder.createMessage("m" + i,
+                    frame(SimpMessageType.MESSAGE, null, null, "/topic/chat/1").getHeaders()));
+        }
+        inbound.send(frame(SimpMessageType.UNSUBSCRIBE, "s1", "sub-1", "/topic/chat/1"));
+        brokerChannel.send(MessageBuilder.createMessage("late",
+                frame(SimpMessageType.MESSAGE, null, null, "/topic/chat/1").getHeaders()));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.size() < 50 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        broker.stop();
+        outboundExecutor.shutdown();
+
+        Assertions.assertEquals(50, delivered.size());
+        for (int i = 0; i < 50; i++) {
+            Message<?> message = delivered.get(i);
+            Assertions.assertEquals("m" + i, message.getPayload());
+            Assertions.assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            Assertions.assertEquals("sub-1", SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+        }
+    }
+
+    private Message<byte[]> frame(SimpMessageType type, String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
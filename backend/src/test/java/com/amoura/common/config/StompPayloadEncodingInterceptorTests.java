@@ -0,0 +1,147 @@
+package com.amoura.common.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StompPayloadEncodingInterceptorTests {
+
+    private final StompPayloadEncodingInterceptor interceptor = new StompPayloadEncodingInterceptor();
+
+    @Test
+    @DisplayName("Subscription CBOR nhận payload CBOR (bỏ trường null, chuyển mã một lần), subscription khác vẫn nhận JSON")
+    public void encodesNegotiatedSubscriptionsOnce() throws Exception {
+        interceptor.preSend(subscribe("s1", "sub-1", "application/cbor", true), null);
+        interceptor.preSend(subscribe("s2", "sub-1", "application/cbor", true), null);
+        interceptor.preSend(subscribe("s3", "sub-1", null, true), null);
+
+        byte[] json = "{\"type\":\"MESSAGE\",\"chatRoomId\":5,\"content\":\"xin chào\",\"imageUrl\":null,\"meta\":{\"a\":null,\"b\":[1,2]}}"
+                .getBytes(StandardCharsets.UTF_8);
+        Message<?> toS1 = interceptor.preSend(message("s1", "sub-1", json), null);
+        Message<?> toS2 = interceptor.preSend(message("s2", "sub-1", json), null);
+        Message<?> toS3 = interceptor.preSend(message("s3", "sub-1", json), null);
+
+        Assertions.assertSame(json, toS3.getPayload());
+        Assertions.assertSame(toS1.getPayload(), toS2.getPayload());
+        StompHeaderAccessor toS1Headers = StompHeaderAccessor.wrap(toS1);
+        Assertions.assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, toS1Headers.getContentType());
+        Assertions.assertEquals("cbor", toS1Headers.getFirstNativeHeader("payload-encoding"));
+
+        JsonNode decoded = new CBORMapper().readTree((byte[]) toS1.getPayload());
+        JsonNode expected = new ObjectMapper().readTree("{\"type\":\"MESSAGE\",\"chatRoomId\":5,\"content\":\"xin chào\",\"meta\":{\"b\":[1,2]}}");
+        Assertions.assertEquals(expected, decoded);
+        Assertions.assertTrue(((byte[]) toS1.getPayload()).length < json.length);
+
+        // Huỷ subscription / ngắt kết nối: quay lại JSON
+        StompHeaderAccessor unsubscribe = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        unsubscribe.setSessionId("s1");
+        unsubscribe.setSubscriptionId("sub-1");
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], unsubscribe.getMessageHeaders()), null);
+        Assertions.assertSame(json, interceptor.preSend(message("s1", "sub-1", json), null).getPayload());
+
+        StompHeaderAccessor disconnect = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        disconnect.setSessionId("s2");
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), null);
+        Assertions.assertEquals(1, interceptor.trackedSessions());
+    }
+
+    @Test
+    @DisplayName("Qua StompSubProtocolHandler: phiên WebSocket thuần nhận frame nhị phân CBOR nguyên vẹn, phiên SockJS vẫn nhận JSON dạng text")
+    public void deliversCborAsBinaryFramesOnRawSessionsOnly() throws Exception {
+        interceptor.preSend(subscribe("raw", "sub-1", "application/cbor", true), null);
+        interceptor.preSend(subscribe("sockjs", "sub-1", "application/cbor", false), null);
+
+        byte[] json = "{\"type\":\"MESSAGE\",\"content\":\"xin chào\",\"imageUrl\":null,\"seq\":300}"
+                .getBytes(StandardCharsets.UTF_8);
+        StompSubProtocolHandler handler = new StompSubProtocolHandler();
+
+        WebSocketSession raw = session("raw");
+        handler.handleMessageToClient(raw, interceptor.preSend(message("raw", "sub-1", json), null));
+        ArgumentCaptor<WebSocketMessage<?>> rawFrame = ArgumentCaptor.forClass(WebSocketMessage.class);
+        Mockito.verify(raw).sendMessage(rawFrame.capture());
+        Assertions.assertInstanceOf(BinaryMessage.class, rawFrame.getValue());
+
+        Message<byte[]> decoded = decode(((BinaryMessage) rawFrame.getValue()).getPayload());
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(decoded);
+        Assertions.assertEquals(StompCommand.MESSAGE, headers.getCommand());
+        Assertions.assertEquals("cbor", headers.getFirstNativeHeader("payload-encoding"));
+        Assertions.assertEquals(new ObjectMapper().readTree("{\"type\":\"MESSAGE\",\"content\":\"xin chào\",\"seq\":300}"),
+                new CBORMapper().readTree(decoded.getPayload()));
+
+        WebSocketSession sockJs = session("sockjs");
+        handler.handleMessageToClient(sockJs, interceptor.preSend(message("sockjs", "sub-1", json), null));
+        ArgumentCaptor<WebSocketMessage<?>> sockJsFrame = ArgumentCaptor.forClass(WebSocketMessage.class);
+        Mockito.verify(sockJs).sendMessage(sockJsFrame.capture());
+        Assertions.assertInstanceOf(TextMessage.class, sockJsFrame.getValue());
+        Assertions.assertArrayEquals(json, decode(((TextMessage) sockJsFrame.getValue()).asBytes()).getPayload());
+    }
+
+    private WebSocketSession session(String sessionId) {
+        WebSocketSession session = Mockito.mock(WebSocketSession.class);
+        Mockito.lenient().when(session.getId()).thenReturn(sessionId);
+        Mockito.lenient().when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private Message<byte[]> decode(ByteBuffer frame) {
+        List<Message<byte[]>> messages = new StompDecoder().decode(frame);
+        Assertions.assertEquals(1, messages.size());
+        return messages.get(0);
+    }
+
+    private Message<byte[]> decode(byte[] frame) {
+        return decode(ByteBuffer.wrap(frame));
+    }
+
+    private Message<byte[]> subscribe(String sessionId, String subscriptionId, String contentType, boolean binaryFrames) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        // Giống handshake: chỉ endpoint WebSocket thuần đánh dấu phiên nhận frame nhị phân
+        Map<String, Object> attributes = new HashMap<>();
+        if (binaryFrames) {
+            new StompPayloadEncodingInterceptor.BinaryFramesHandshakeInterceptor()
+                    .beforeHandshake(null, null, null, attributes);
+        }
+        accessor.setSessionAttributes(attributes);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/chat/5");
+        if (contentType != null) {
+            accessor.setNativeHeader("content-type", contentType);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // Giống SimpleBroker: mỗi subscriber một bộ header, dùng chung mảng payload
+    private Message<byte[]> message(String sessionId, String subscriptionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/chat/5");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
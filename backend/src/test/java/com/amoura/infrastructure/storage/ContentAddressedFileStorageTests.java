@@ -0,0 +1,84 @@
+package com.amoura.infrastructure.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@ExtendWith(MockitoExtension.class)
+public class ContentAddressedFileStorageTests {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path uploadDir;
+
+    @Test
+    @DisplayName("Cùng nội dung chỉ lưu một file, file bị xoá khi lượt tham chiếu cuối được bỏ")
+    public void deduplicatesByContentHash() throws Exception {
+        ContentAddressedFileStorage storage =
+                new ContentAddressedFileStorage(jdbcTemplate, new SimpleMeterRegistry(), uploadDir.toString());
+        byte[] content = "same image".getBytes(StandardCharsets.UTF_8);
+
+        String first = storage.store(new ByteArrayInputStream(content), "chat", ".PNG");
+        String second = storage.store(new ByteArrayInputStream(content), "chat", ".png");
+        String other = storage.store(new ByteArrayInputStream("other".getBytes(StandardCharsets.UTF_8)), "chat", ".png");
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertNotEquals(first, other);
+        Assertions.assertTrue(first.startsWith("chat/blobs/") && first.endsWith(".png"));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(uploadDir.resolve(first)));
+        Assertions.assertEquals(1.0 / 3, storage.dedupRatio(), 1e-9);
+        try (var leftovers = Files.list(uploadDir.resolve("tmp"))) {
+            Assertions.assertEquals(0, leftovers.count());
+        }
+
+        // Còn tham chiếu: giữ file
+        Mockito.lenient().when(jdbcTemplate.update(Mockito.startsWith("DELETE"), Mockito.eq(first))).thenReturn(0);
+        storage.release(first);
+        Assertions.assertTrue(Files.exists(uploadDir.resolve(first)));
+
+        // Lượt cuối: xoá file
+        Mockito.lenient().when(jdbcTemplate.update(Mockito.startsWith("DELETE"), Mockito.eq(first))).thenReturn(1);
+        storage.release(first);
+        Assertions.assertFalse(Files.exists(uploadDir.resolve(first)));
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).update(Mockito.startsWith("INSERT"), Mockito.eq(first),
+                Mockito.anyString(), Mockito.eq((long) content.length));
+    }
+
+    @Test
+    @DisplayName("Ảnh chat tải lên không giữ tham chiếu; mỗi tin nhắn dùng ảnh giữ một lượt, ảnh đã bị xoá thì không lấy được")
+    public void referencesAreHeldPerRecord() throws Exception {
+        ContentAddressedFileStorage storage =
+                new ContentAddressedFileStorage(jdbcTemplate, new SimpleMeterRegistry(), uploadDir.toString());
+
+        String path = storage.storeUnreferenced(
+                new ByteArrayInputStream("chat image".getBytes(StandardCharsets.UTF_8)), "chat", ".jpg");
+        Mockito.verify(jdbcTemplate).update(Mockito.contains("ON CONFLICT (path) DO NOTHING"), Mockito.eq(path),
+                Mockito.anyString(), Mockito.anyLong());
+
+        Mockito.when(jdbcTemplate.update(Mockito.startsWith("UPDATE stored_files SET ref_count = ref_count + 1"),
+                Mockito.eq(path))).thenReturn(1, 1, 0);
+        Assertions.assertTrue(storage.acquire(path));
+        Assertions.assertTrue(storage.acquire(path));
+        // File đã bị xoá khi không còn ai dùng
+        Assertions.assertFalse(storage.acquire(path));
+
+        // Đường dẫn cũ / URL ngoài không do storage quản lý
+        Assertions.assertTrue(storage.acquire("chat/legacy.jpg"));
+        Assertions.assertTrue(storage.acquire("https://cdn.example.com/users/blobs/ab/ab.jpg"));
+        Assertions.assertTrue(storage.acquire(null));
+    }
+}
@@ -0,0 +1,31 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.service.AIServiceCircuitBreaker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AIServiceCircuitBreakerTests {
+
+    @Test
+    @DisplayName("Mở mạch sau số lỗi liên tiếp và chỉ cho một lời gọi thử khi hết thời gian mở")
+    public void opensAfterThresholdAndAllowsSingleTrial() throws InterruptedException {
+        AIServiceCircuitBreaker breaker = new AIServiceCircuitBreaker(3, 50);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assertions.assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        Assertions.assertEquals(AIServiceCircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.allowRequest());
+
+        Thread.sleep(80);
+        Assertions.assertTrue(breaker.allowRequest());
+        Assertions.assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        Assertions.assertEquals(AIServiceCircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertTrue(breaker.allowRequest());
+    }
+}
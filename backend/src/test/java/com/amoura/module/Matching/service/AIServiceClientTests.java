@@ -0,0 +1,103 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.common.config.RestTemplateConfig;
+import com.amoura.module.matching.service.AIServiceCircuitBreaker;
+import com.amoura.module.matching.service.AIServiceClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class AIServiceClientTests {
+
+    @Test
+    @DisplayName("Lời gọi gợi ý bị ngắt sau ai.service.deadline-ms dù read-timeout dài, và được tính là lỗi")
+    public void potentialMatchesGiveUpAtDeadline() throws Exception {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectionTimeout", 5000);
+        ReflectionTestUtils.setField(config, "readTimeout", 30000);
+        ReflectionTestUtils.setField(config, "maxTotalConnections", 4);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", 4);
+        ReflectionTestUtils.setField(config, "deadlineMs", 200);
+        ReflectionTestUtils.setField(config, "editDeadlineMs", 1000);
+
+        // Server nhận kết nối nhưng không bao giờ trả lời
+        try (ServerSocket server = new ServerSocket(0);
+             PoolingHttpClientConnectionManager connectionManager = config.aiServiceConnectionManager()) {
+            Thread acceptor = new Thread(() -> {
+                try (Socket ignored = server.accept()) {
+                    Thread.sleep(10_000);
+                } catch (Exception ignored) {
+                    // server đóng khi test kết thúc
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            AIServiceCircuitBreaker breaker = new AIServiceCircuitBreaker(1, 60_000);
+            AIServiceClient client = new AIServiceClient(
+                    config.restTemplate(connectionManager), config.aiEditRestTemplate(connectionManager), breaker);
+            ReflectionTestUtils.setField(client, "aiServiceBaseUrl", "http://localhost:" + server.getLocalPort());
+
+            long startedAt = System.nanoTime();
+            Assertions.assertTrue(client.getPotentialMatches(1L, 10).isEmpty());
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+
+            Assertions.assertTrue(elapsedMs < 2000, "call took " + elapsedMs + "ms");
+            Assertions.assertEquals(AIServiceCircuitBreaker.State.OPEN, breaker.getState());
+        }
+    }
+
+    @Test
+    @DisplayName("Phản hồi nhỏ giọt (mỗi gói tin đến trước response timeout) vẫn bị huỷ khi hết tổng thời hạn")
+    public void tricklingResponseIsCancelledAtDeadline() throws Exception {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectionTimeout", 5000);
+        ReflectionTestUtils.setField(config, "readTimeout", 30000);
+        ReflectionTestUtils.setField(config, "maxTotalConnections", 4);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", 4);
+        ReflectionTestUtils.setField(config, "deadlineMs", 500);
+        ReflectionTestUtils.setField(config, "editDeadlineMs", 1000);
+
+        // Server trả header ngay rồi gửi body từng byte, mỗi 100ms một byte
+        try (ServerSocket server = new ServerSocket(0);
+             PoolingHttpClientConnectionManager connectionManager = config.aiServiceConnectionManager()) {
+            Thread trickler = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 100\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII));
+                    for (int i = 0; i < 100; i++) {
+                        out.write(' ');
+                        out.flush();
+                        Thread.sleep(100);
+                    }
+                } catch (Exception ignored) {
+                    // client huỷ kết nối
+                }
+            });
+            trickler.setDaemon(true);
+            trickler.start();
+
+            AIServiceCircuitBreaker breaker = new AIServiceCircuitBreaker(1, 60_000);
+            AIServiceClient client = new AIServiceClient(
+                    config.restTemplate(connectionManager), config.aiEditRestTemplate(connectionManager), breaker);
+            ReflectionTestUtils.setField(client, "aiServiceBaseUrl", "http://localhost:" + server.getLocalPort());
+
+            long startedAt = System.nanoTime();
+            Assertions.assertTrue(client.getPotentialMatches(1L, 10).isEmpty());
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+
+            Assertions.assertTrue(elapsedMs < 2000, "call took " + elapsedMs + "ms");
+            Assertions.assertEquals(AIServiceCircuitBreaker.State.OPEN, breaker.getState());
+        } finally {
+            config.stopDeadlineTimer();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.repository.CandidateProjection;
+import com.amoura.module.matching.repository.CandidateRepository;
+import com.amoura.module.matching.service.CandidateIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+public class CandidateIndexTests {
+
+    @Mock
+    private CandidateRepository candidateRepository;
+
+    @Test
+    @DisplayName("Tìm ứng viên gần nhất theo bán kính, bỏ qua user bị khoá và đã swipe")
+    public void findNearestOrdersByDistanceWithinRadius() {
+        Mockito.when(candidateRepository.findAllCandidates()).thenReturn(List.of(
+                candidate(1L, "active", 10.7769, 106.7009),  // TP.HCM - người tìm
+                candidate(2L, "active", 10.8231, 106.6297),  // ~9km
+                candidate(3L, "active", 10.9804, 106.6519),  // ~23km
+                candidate(4L, "active", 21.0278, 105.8342),  // Hà Nội - ngoài bán kính
+                candidate(5L, "suspend", 10.7800, 106.7000), // bị khoá
+                candidate(6L, "active", 10.7780, 106.7010)   // rất gần nhưng đã swipe
+        ));
+        CandidateIndex index = new CandidateIndex(candidateRepository);
+        index.rebuild();
+
+        List<Long> nearest = index.findNearest(1L, 10.7769, 106.7009, 50, id -> id == 6L, 10);
+
+        Assertions.assertEquals(List.of(2L, 3L), nearest);
+    }
+
+    @Test
+    @DisplayName("Lọc theo giới tính và năm sinh chỉ trả ứng viên khớp, năm sinh gần user đứng trước")
+    public void findCandidatesNarrowsByFilterAndBirthYearProximity() {
+        Mockito.when(candidateRepository.findAllCandidates()).thenReturn(List.of(
+                candidate(1L, "active", "male", 1998),   // người tìm
+                candidate(2L, "active", "female", 2004),
+                candidate(3L, "active", "female", 1997),
+                candidate(4L, "active", "male", 1998),
+                candidate(5L, "active", "female", 1985), // ngoài khoảng năm sinh
+                candidate(6L, "active", "female", 1999)  // đã swipe
+        ));
+        CandidateIndex index = new CandidateIndex(candidateRepository);
+        index.rebuild();
+
+        CandidateIndex.Filter filter = CandidateIndex.Filter.builder()
+                .sex("female").minBirthYear(1990).maxBirthYear(2005).build();
+        List<Long> candidates = index.findCandidates(1L, filter, id -> id == 6L, 10);
+
+        Assertions.assertEquals(List.of(3L, 2L), candidates);
+    }
+
+    @Test
+    @DisplayName("Gợi ý mặc định ưu tiên ứng viên gần tuổi, thiếu thì nới rộng ra ngoài khoảng tuổi")
+    public void findCandidatesWidensAgeWindowWhenShort() {
+        Mockito.when(candidateRepository.findAllCandidates()).thenReturn(List.of(
+                candidate(1L, "active", "male", 1998),
+                candidate(2L, "active", "female", 1970),
+                candidate(3L, "active", "female", 2000),
+                candidate(4L, "suspend", "female", 1998)
+        ));
+        CandidateIndex index = new CandidateIndex(candidateRepository);
+        index.rebuild();
+
+        Assertions.assertEquals(List.of(3L), index.findCandidates(1L, id -> false, 1));
+        Assertions.assertEquals(List.of(3L, 2L), index.findCandidates(1L, id -> false, 10));
+    }
+
+    @Test
+    @DisplayName("Nạp lại toàn bộ: luồng đọc vẫn thấy bản cũ cho tới khi đổi bản, cập nhật song song không bị mất")
+    public void rebuildSwapsSnapshotAndKeepsConcurrentRefreshes() {
+        CandidateIndex index = new CandidateIndex(candidateRepository);
+        Mockito.when(candidateRepository.findAllCandidates())
+                .thenReturn(List.of(candidate(1L, "active", "female", 1998)))
+                .thenAnswer(invocation -> {
+                    // Đang nạp lại: bản cũ vẫn đầy đủ, và một user được cập nhật song song
+                    Assertions.assertNotNull(index.get(1L));
+                    index.refresh(7L);
+                    return List.of(candidate(1L, "active", "female", 1998), candidate(2L, "active", "male", 1995));
+                });
+        Mockito.when(candidateRepository.findCandidateById(7L))
+                .thenReturn(Optional.of(candidate(7L, "active", "female", 1999)));
+        index.rebuild();
+
+        index.rebuild();
+
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertNotNull(index.get(7L));
+    }
+
+    private CandidateProjection candidate(Long userId, String status, String sex, int birthYear) {
+        return new CandidateProjection() {
+            public Long getUserId() { return userId; }
+            public String getStatus() { return status; }
+            public String getSex() { return sex; }
+            public Long getOrientationId() { return null; }
+            public LocalDate getDateOfBirth() { return LocalDate.of(birthYear, 1, 1); }
+            public BigDecimal getLatitude() { return null; }
+            public BigDecimal getLongitude() { return null; }
+        };
+    }
+
+    private CandidateProjection candidate(Long userId, String status, double latitude, double longitude) {
+        return new CandidateProjection() {
+            public Long getUserId() { return userId; }
+            public String getStatus() { return status; }
+            public String getSex() { return "female"; }
+            public Long getOrientationId() { return null; }
+            public LocalDate getDateOfBirth() { return LocalDate.of(1998, 1, 1); }
+            public BigDecimal getLatitude() { return BigDecimal.valueOf(latitude); }
+            public BigDecimal getLongitude() { return BigDecimal.valueOf(longitude); }
+        };
+    }
+}
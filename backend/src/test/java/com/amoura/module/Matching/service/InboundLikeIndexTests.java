@@ -0,0 +1,53 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.repository.SwipeRepository;
+import com.amoura.module.matching.service.InboundLikeIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class InboundLikeIndexTests {
+
+    @Mock
+    private SwipeRepository swipeRepository;
+
+    @Test
+    @DisplayName("Phát hiện like hai chiều từ bitmap và cập nhật khi user đổi ý")
+    public void detectsInboundLikesAndAppliesChanges() {
+        Mockito.when(swipeRepository.findLikerIdsByTargetUserId(1L)).thenReturn(List.of(2L, 3L));
+        InboundLikeIndex index = new InboundLikeIndex(swipeRepository, 10);
+
+        Assertions.assertTrue(index.hasLiked(2L, 1L));
+        Assertions.assertFalse(index.hasLiked(4L, 1L));
+
+        index.recordSwipe(4L, 1L, true);
+        index.recordSwipe(2L, 1L, false);
+
+        Assertions.assertTrue(index.hasLiked(4L, 1L));
+        Assertions.assertFalse(index.hasLiked(2L, 1L));
+        Mockito.verify(swipeRepository, Mockito.times(1)).findLikerIdsByTargetUserId(1L);
+    }
+
+    @Test
+    @DisplayName("Like commit trong lúc đang nạp bitmap không bị mất")
+    public void keepsLikesRecordedWhileLoading() {
+        InboundLikeIndex index = new InboundLikeIndex(swipeRepository, 10);
+        Mockito.when(swipeRepository.findLikerIdsByTargetUserId(1L)).thenAnswer(invocation -> {
+            // Like của user 4 commit sau khi truy vấn đã đọc xong; user 2 đổi ý
+            index.recordSwipe(4L, 1L, true);
+            index.recordSwipe(2L, 1L, false);
+            return List.of(2L, 3L);
+        });
+
+        Assertions.assertTrue(index.hasLiked(4L, 1L));
+        Assertions.assertTrue(index.hasLiked(3L, 1L));
+        Assertions.assertFalse(index.hasLiked(2L, 1L));
+    }
+}
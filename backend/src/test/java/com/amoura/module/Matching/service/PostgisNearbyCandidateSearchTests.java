@@ -0,0 +1,38 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.repository.CandidateRepository;
+import com.amoura.module.matching.service.PostgisNearbyCandidateSearch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+@ExtendWith(MockitoExtension.class)
+public class PostgisNearbyCandidateSearchTests {
+
+    @Mock
+    private CandidateRepository candidateRepository;
+
+    @InjectMocks
+    private PostgisNearbyCandidateSearch search;
+
+    @Test
+    @DisplayName("Đọc thêm trang khi bộ lọc loại trừ làm trang đầu không đủ")
+    public void readsMorePagesUntilLimitIsFilled() {
+        List<Long> firstPage = LongStream.rangeClosed(1, 20).boxed().toList();
+        Mockito.when(candidateRepository.findNearestCandidateIds(1L, 10.0, 106.0, 5000.0, 0, 20)).thenReturn(firstPage);
+        Mockito.when(candidateRepository.findNearestCandidateIds(1L, 10.0, 106.0, 5000.0, 20, 20)).thenReturn(List.of(21L, 22L, 23L));
+
+        // Loại trừ mọi id <= 18: trang đầu chỉ còn 19, 20
+        List<Long> nearest = search.findNearest(1L, 10.0, 106.0, 5, id -> id <= 18, 4);
+
+        Assertions.assertEquals(List.of(19L, 20L, 21L, 22L), nearest);
+    }
+}
@@ -0,0 +1,93 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.dto.ReceivedLikeDTO;
+import com.amoura.module.matching.dto.UserRecommendationDTO;
+import com.amoura.module.matching.repository.CandidateRepository;
+import com.amoura.module.matching.repository.CardUserProjection;
+import com.amoura.module.matching.repository.ReceivedLikeProjection;
+import com.amoura.module.matching.service.ProfileCardAssembler;
+import com.amoura.module.profile.domain.Profile;
+import com.amoura.module.profile.repository.LocationRepository;
+import com.amoura.module.profile.repository.PhotoRepository;
+import com.amoura.module.profile.repository.ProfileRepository;
+import com.amoura.module.profile.repository.UserInterestRepository;
+import com.amoura.module.profile.repository.UserPetRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class ProfileCardAssemblerTests {
+
+    @Mock
+    private ProfileRepository profileRepository;
+    @Mock
+    private UserInterestRepository userInterestRepository;
+    @Mock
+    private UserPetRepository userPetRepository;
+    @Mock
+    private PhotoRepository photoRepository;
+    @Mock
+    private LocationRepository locationRepository;
+    @Mock
+    private CandidateRepository candidateRepository;
+
+    @InjectMocks
+    private ProfileCardAssembler assembler;
+
+    @Test
+    @DisplayName("Dựng thẻ theo thứ tự id đầu vào từ projection, bỏ qua user không còn tồn tại")
+    public void buildsCardsInRequestedOrder() {
+        Mockito.when(candidateRepository.findCardUsersByIdIn(Mockito.any()))
+                .thenReturn(List.of(cardUser(2L), cardUser(1L)));
+        Mockito.when(profileRepository.findAllById(Mockito.any())).thenReturn(List.of(
+                Profile.builder().userId(1L).sex("female").dateOfBirth(LocalDate.of(2000, 1, 1)).build()));
+
+        List<UserRecommendationDTO> cards = assembler.toRecommendations(List.of(1L, 9L, 2L));
+
+        Assertions.assertEquals(List.of(1L, 2L), cards.stream().map(UserRecommendationDTO::getUserId).toList());
+        Assertions.assertEquals("female", cards.get(0).getSex());
+        Assertions.assertEquals("user1", cards.get(0).getUsername());
+        Assertions.assertEquals("Unknown", cards.get(1).getLocation());
+    }
+
+    @Test
+    @DisplayName("Thẻ like nhận được dùng chung bộ dựng thẻ hồ sơ và thêm thời điểm like")
+    public void receivedLikesShareCardBuilder() {
+        LocalDateTime likedAt = LocalDateTime.of(2025, 8, 1, 12, 0);
+        Mockito.when(candidateRepository.findCardUsersByIdIn(Mockito.any())).thenReturn(List.of(cardUser(3L)));
+
+        List<ReceivedLikeDTO> likes = assembler.toReceivedLikes(List.of(receivedLike(10L, 3L, likedAt)));
+
+        Assertions.assertEquals(1, likes.size());
+        Assertions.assertEquals(3L, likes.get(0).getUserId());
+        Assertions.assertEquals("First3", likes.get(0).getFirstName());
+        Assertions.assertEquals(likedAt, likes.get(0).getLikedAt());
+    }
+
+    private CardUserProjection cardUser(Long userId) {
+        return new CardUserProjection() {
+            public Long getUserId() { return userId; }
+            public String getUsername() { return "user" + userId; }
+            public String getFirstName() { return "First" + userId; }
+            public String getLastName() { return "Last" + userId; }
+        };
+    }
+
+    private ReceivedLikeProjection receivedLike(Long id, Long initiatorId, LocalDateTime createdAt) {
+        return new ReceivedLikeProjection() {
+            public Long getId() { return id; }
+            public Long getInitiatorId() { return initiatorId; }
+            public LocalDateTime getCreatedAt() { return createdAt; }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.service.AIServiceClient;
+import com.amoura.module.matching.service.CandidateIndex;
+import com.amoura.module.matching.service.RecommendationDeckCache;
+import com.amoura.module.matching.service.SwipedSetCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+@ExtendWith(MockitoExtension.class)
+public class RecommendationDeckCacheTests {
+
+    @Mock
+    private AIServiceClient aiServiceClient;
+
+    @Mock
+    private CandidateIndex candidateIndex;
+
+    @Mock
+    private SwipedSetCache swipedSetCache;
+
+    @Test
+    @DisplayName("Dựng bộ bài từ AI service rồi bổ sung bằng chỉ mục, swipe lấy ứng viên ra khỏi bộ bài")
+    public void fillsFromAiThenIndexAndConsumesOnSwipe() {
+        LongPredicate swiped = id -> id == 6L;
+        Mockito.when(swipedSetCache.exclusionFor(1L)).thenReturn(swiped);
+        Mockito.when(aiServiceClient.getPotentialMatches(1L, 4)).thenReturn(List.of(5L, 6L, 7L));
+        Mockito.when(candidateIndex.get(Mockito.anyLong())).thenReturn(activeEntry());
+        Mockito.when(candidateIndex.findCandidates(Mockito.eq(1L), Mockito.any(), Mockito.eq(2)))
+                .thenReturn(List.of(8L, 9L));
+
+        // Executor đồng bộ để việc bổ sung chạy ngay trong test
+        RecommendationDeckCache decks = new RecommendationDeckCache(
+                aiServiceClient, candidateIndex, swipedSetCache, Runnable::run, 100, 4, 2);
+
+        Assertions.assertTrue(decks.peek(1L, 3, swiped).isEmpty());
+        Assertions.assertEquals(List.of(5L, 7L, 8L), decks.peek(1L, 3, swiped));
+
+        decks.consume(1L, 5L);
+        Assertions.assertEquals(3, decks.remaining(1L));
+        Assertions.assertEquals(List.of(7L, 8L, 9L), decks.peek(1L, 3, swiped));
+    }
+
+    private CandidateIndex.Entry activeEntry() {
+        return new CandidateIndex.Entry(0L, true, "female", 0L, (short) 0,
+                CandidateIndex.UNKNOWN_GEO_CELL, Float.NaN, Float.NaN);
+    }
+}
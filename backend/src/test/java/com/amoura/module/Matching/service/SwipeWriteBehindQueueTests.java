@@ -0,0 +1,112 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.service.SwipeWriteBehindQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+@ExtendWith(MockitoExtension.class)
+public class SwipeWriteBehindQueueTests {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    @DisplayName("Phát lại nhật ký còn sót khi khởi động và xả hàng đợi khi tắt")
+    @SuppressWarnings("unchecked")
+    public void replaysLogOnStartAndDrainsOnStop() throws Exception {
+        Path logFile = tempDir.resolve("swipes.log");
+        Files.writeString(logFile, "1,2,false,1700000000000\n1,3,fal");
+
+        SwipeWriteBehindQueue queue = new SwipeWriteBehindQueue(jdbcTemplate, new SimpleMeterRegistry(),
+                "write-behind", logFile.toString(), 100, 60_000, 10);
+        queue.start();
+
+        ArgumentCaptor<Collection<Object>> batch = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(jdbcTemplate).batchUpdate(Mockito.anyString(), batch.capture(), Mockito.eq(1),
+                Mockito.any(ParameterizedPreparedStatementSetter.class));
+        Assertions.assertEquals(1, batch.getValue().size());
+        Assertions.assertEquals(0, Files.size(logFile));
+
+        Assertions.assertTrue(queue.offer(4L, 5L, false));
+        Assertions.assertTrue(queue.offer(4L, 6L, false));
+        Assertions.assertEquals(2, queue.queueDepth());
+        Assertions.assertEquals(2, Files.readAllLines(logFile).size());
+
+        queue.stop();
+
+        Assertions.assertEquals(0, queue.queueDepth());
+        Assertions.assertEquals(0, Files.size(logFile));
+    }
+
+    @Test
+    @DisplayName("Lô lỗi được ghi lại từng dòng: dòng vi phạm ràng buộc chuyển sang dead-letter, các dòng khác vẫn được ghi")
+    @SuppressWarnings("unchecked")
+    public void isolatesRejectedRowsIntoDeadLetter() throws Exception {
+        Path logFile = tempDir.resolve("swipes.log");
+        Mockito.when(jdbcTemplate.batchUpdate(Mockito.anyString(), Mockito.any(Collection.class), Mockito.anyInt(),
+                Mockito.any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("fk_swipes_target_user"));
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.eq(4L), Mockito.eq(5L), Mockito.any(),
+                Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenThrow(new DataIntegrityViolationException("fk_swipes_target_user"));
+
+        SwipeWriteBehindQueue queue = new SwipeWriteBehindQueue(jdbcTemplate, new SimpleMeterRegistry(),
+                "write-behind", logFile.toString(), 100, 60_000, 10);
+        queue.start();
+        Assertions.assertTrue(queue.offer(4L, 5L, false));
+        Assertions.assertTrue(queue.offer(4L, 6L, false));
+
+        Assertions.assertTrue(queue.awaitWritten(4L, 6L));
+        Assertions.assertTrue(queue.awaitWritten(4L, 5L));
+        Mockito.verify(jdbcTemplate).update(Mockito.anyString(), Mockito.eq(4L), Mockito.eq(6L), Mockito.any(),
+                Mockito.any(), Mockito.any(), Mockito.any());
+        Assertions.assertEquals(0, queue.queueDepth());
+        Assertions.assertEquals(0, Files.size(logFile));
+        Assertions.assertTrue(Files.readString(tempDir.resolve("swipes.log.dead")).startsWith("4,5,false,"));
+
+        queue.stop();
+    }
+
+    @Test
+    @DisplayName("Database lỗi khi phát lại nhật ký: vẫn khởi động, giữ nhật ký và ghi lại ở nền khi database hoạt động trở lại")
+    @SuppressWarnings("unchecked")
+    public void keepsLogAndStartsWhenReplayFails() throws Exception {
+        Path logFile = tempDir.resolve("swipes.log");
+        Files.writeString(logFile, "1,2,false,1700000000000\n1,3,false,1700000000000\n");
+        Mockito.when(jdbcTemplate.batchUpdate(Mockito.anyString(), Mockito.any(Collection.class), Mockito.anyInt(),
+                Mockito.any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn(new int[0][]);
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        SwipeWriteBehindQueue queue = new SwipeWriteBehindQueue(jdbcTemplate, new SimpleMeterRegistry(),
+                "write-behind", logFile.toString(), 1, 60_000, 10);
+        queue.start();
+
+        Assertions.assertEquals(2, Files.readAllLines(logFile).size());
+        Assertions.assertTrue(queue.awaitWritten(1L, 3L));
+        Assertions.assertEquals(0, Files.size(logFile));
+
+        queue.stop();
+    }
+}
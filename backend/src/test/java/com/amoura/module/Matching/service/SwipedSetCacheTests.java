@@ -0,0 +1,69 @@
+package com.amoura.module.Matching.service;
+
+import com.amoura.module.matching.repository.SwipeRepository;
+import com.amoura.module.matching.service.SwipedSetCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class SwipedSetCacheTests {
+
+    @Mock
+    private SwipeRepository swipeRepository;
+
+    @Test
+    @DisplayName("Dựng bitmap từ database một lần và ghi nhận swipe mới")
+    public void loadsOnceAndRecordsNewSwipes() {
+        Mockito.when(swipeRepository.findTargetUserIdsByInitiatorId(1L)).thenReturn(List.of(5L, 7L, 100_000L));
+        SwipedSetCache cache = new SwipedSetCache(swipeRepository, 10);
+
+        Assertions.assertTrue(cache.hasSwiped(1L, 7L));
+        Assertions.assertTrue(cache.hasSwiped(1L, 100_000L));
+        Assertions.assertFalse(cache.hasSwiped(1L, 8L));
+
+        cache.recordSwipe(1L, 8L);
+        Assertions.assertTrue(cache.hasSwiped(1L, 8L));
+
+        Mockito.verify(swipeRepository, Mockito.times(1)).findTargetUserIdsByInitiatorId(1L);
+    }
+
+    @Test
+    @DisplayName("Giới hạn số user thường trú theo LRU")
+    public void evictsLeastRecentlyUsedUser() {
+        Mockito.when(swipeRepository.findTargetUserIdsByInitiatorId(Mockito.anyLong())).thenReturn(List.of());
+        SwipedSetCache cache = new SwipedSetCache(swipeRepository, 2);
+
+        cache.exclusionFor(1L);
+        cache.exclusionFor(2L);
+        cache.exclusionFor(1L);
+        cache.exclusionFor(3L);
+
+        Assertions.assertEquals(2, cache.residentUsers());
+
+        // User 2 ít được dùng nhất nên bị loại và phải nạp lại
+        cache.exclusionFor(2L);
+        Mockito.verify(swipeRepository, Mockito.times(2)).findTargetUserIdsByInitiatorId(2L);
+    }
+
+    @Test
+    @DisplayName("Swipe commit trong lúc đang nạp bitmap không bị mất")
+    public void keepsSwipesRecordedWhileLoading() {
+        SwipedSetCache cache = new SwipedSetCache(swipeRepository, 10);
+        Mockito.when(swipeRepository.findTargetUserIdsByInitiatorId(1L)).thenAnswer(invocation -> {
+            // Swipe commit sau khi truy vấn đã đọc xong nhưng trước khi bitmap vào cache
+            cache.recordSwipe(1L, 9L);
+            return List.of(5L);
+        });
+
+        Assertions.assertTrue(cache.hasSwiped(1L, 5L));
+        Assertions.assertTrue(cache.hasSwiped(1L, 9L));
+        Mockito.verify(swipeRepository, Mockito.times(1)).findTargetUserIdsByInitiatorId(1L);
+    }
+}
@@ -0,0 +1,51 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.repository.ChatRoomParticipantsProjection;
+import com.amoura.module.chat.repository.ChatRoomRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatRoomMembershipCacheTests {
+
+    @Mock
+    private ChatRoomRepository chatRoomRepository;
+
+    @Test
+    @DisplayName("Chỉ truy vấn database một lần mỗi phòng, nạp lại sau khi bị xoá khỏi cache")
+    public void loadsParticipantsOncePerRoom() {
+        Mockito.when(chatRoomRepository.findParticipantsById(5L)).thenReturn(Optional.of(participants(1L, 2L)));
+        Mockito.when(chatRoomRepository.findParticipantsById(6L)).thenReturn(Optional.empty());
+        ChatRoomMembershipCache cache = new ChatRoomMembershipCache(chatRoomRepository, 100);
+
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(cache.isMember(5L, 1L));
+            Assertions.assertTrue(cache.isMember(5L, 2L));
+            Assertions.assertFalse(cache.isMember(5L, 3L));
+        }
+        Assertions.assertFalse(cache.isMember(6L, 1L));
+        Mockito.verify(chatRoomRepository, Mockito.times(1)).findParticipantsById(5L);
+
+        cache.evict(5L);
+        Assertions.assertTrue(cache.isMember(5L, 1L));
+        Mockito.verify(chatRoomRepository, Mockito.times(2)).findParticipantsById(5L);
+
+        cache.put(7L, 3L, 4L);
+        Assertions.assertTrue(cache.isMember(7L, 4L));
+        Mockito.verify(chatRoomRepository, Mockito.never()).findParticipantsById(7L);
+    }
+
+    private ChatRoomParticipantsProjection participants(Long user1Id, Long user2Id) {
+        return new ChatRoomParticipantsProjection() {
+            public Long getUser1Id() { return user1Id; }
+            public Long getUser2Id() { return user2Id; }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.domain.ChatRoom;
+import com.amoura.module.chat.domain.Message;
+import com.amoura.module.chat.domain.MessageType;
+import com.amoura.module.chat.dto.MessageDTO;
+import com.amoura.module.chat.mapper.ChatMapper;
+import com.amoura.module.user.domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageSequencerTests {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ChatMapper chatMapper;
+
+    private MessageSequencer sequencer;
+
+    @BeforeEach
+    public void setUp() {
+        sequencer = new MessageSequencer(jdbcTemplate, transactionManager, chatMapper, 2, 100, 5, 10_000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sequencer.stop();
+    }
+
+    @Test
+    @DisplayName("Tin nhắn cùng phòng được ghi theo lô, cấp số thứ tự liên tục và phát đúng thứ tự")
+    public void writesInBatchesAndPublishesInSequenceOrder() throws Exception {
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+        AtomicLong lastSeq = new AtomicLong();
+        AtomicLong nextId = new AtomicLong(1000);
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        // Lô đầu bị giữ lại để các tin nhắn sau dồn vào một lô
+        Mockito.when(jdbcTemplate.queryForObject(Mockito.startsWith("UPDATE chat_rooms"), Mockito.eq(Long.class),
+                Mockito.any(), Mockito.any(), Mockito.eq(5L))).thenAnswer(invocation -> {
+            firstBatchStarted.countDown();
+            releaseFirstBatch.await(5, TimeUnit.SECONDS);
+            return lastSeq.addAndGet(invocation.<Integer>getArgument(2));
+        });
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            Object[] args = invocation.getArguments();
+            // 8 tham số mỗi dòng, room_seq là tham số cuối của dòng
+            for (int i = 2 + 7; i < args.length; i += 8) {
+                ResultSet row = Mockito.mock(ResultSet.class);
+                Mockito.when(row.getLong("room_seq")).thenReturn((Long) args[i]);
+                Mockito.when(row.getLong("id")).thenReturn(nextId.getAndIncrement());
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(Mockito.startsWith("INSERT INTO messages"), Mockito.any(RowCallbackHandler.class),
+                Mockito.any(Object[].class));
+        Mockito.when(chatMapper.toMessageDTO(Mockito.any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            return MessageDTO.builder().id(message.getId()).sequence(message.getRoomSeq()).content(message.getContent()).build();
+        });
+
+        List<Long> published = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<MessageDTO>> futures = new ArrayList<>();
+        futures.add(sequencer.submit(message("m0"), dto -> published.add(dto.getSequence())));
+        Assertions.assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            futures.add(sequencer.submit(message("m" + i), dto -> published.add(dto.getSequence())));
+        }
+        releaseFirstBatch.countDown();
+
+        for (int i = 0; i < futures.size(); i++) {
+            MessageDTO sent = futures.get(i).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(i + 1L, sent.getSequence());
+            Assertions.assertEquals("m" + i, sent.getContent());
+            Assertions.assertNotNull(sent.getId());
+        }
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), published);
+        // Hai lô: tin nhắn đầu, rồi năm tin nhắn dồn lại -> dòng chat_rooms chỉ bị cập nhật hai lần
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).queryForObject(Mockito.startsWith("UPDATE chat_rooms"),
+                Mockito.eq(Long.class), Mockito.any(), Mockito.any(), Mockito.eq(5L));
+    }
+
+    @Test
+    @DisplayName("Tin nhắn bị huỷ khi còn trong hàng đợi không được ghi; tin nhắn đang ghi không huỷ được")
+    public void cancelledQueuedMessageIsNeverWritten() throws Exception {
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+        AtomicLong lastSeq = new AtomicLong();
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        Mockito.when(jdbcTemplate.queryForObject(Mockito.startsWith("UPDATE chat_rooms"), Mockito.eq(Long.class),
+                Mockito.any(), Mockito.any(), Mockito.eq(5L))).thenAnswer(invocation -> {
+            firstBatchStarted.countDown();
+            releaseFirstBatch.await(5, TimeUnit.SECONDS);
+            return lastSeq.addAndGet(invocation.<Integer>getArgument(2));
+        });
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        Mockito.doAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            // content là tham số thứ ba của mỗi dòng
+            for (int i = 2 + 2; i < args.length; i += 8) {
+                written.add((String) args[i]);
+            }
+            return null;
+        }).when(jdbcTemplate).query(Mockito.startsWith("INSERT INTO messages"), Mockito.any(RowCallbackHandler.class),
+                Mockito.any(Object[].class));
+        Mockito.when(chatMapper.toMessageDTO(Mockito.any(Message.class))).thenAnswer(invocation ->
+                MessageDTO.builder().content(invocation.<Message>getArgument(0).getContent()).build());
+
+        CompletableFuture<MessageDTO> writing = sequencer.submit(message("m0"), dto -> { });
+        Assertions.assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MessageDTO> queued = sequencer.submit(message("m1"), dto -> { });
+        CompletableFuture<MessageDTO> kept = sequencer.submit(message("m2"), dto -> { });
+
+        Assertions.assertFalse(writing.cancel(false));
+        Assertions.assertTrue(queued.cancel(false));
+        releaseFirstBatch.countDown();
+
+        Assertions.assertEquals("m0", writing.get(5, TimeUnit.SECONDS).getContent());
+        Assertions.assertEquals("m2", kept.get(5, TimeUnit.SECONDS).getContent());
+        Assertions.assertTrue(queued.isCancelled());
+        Assertions.assertEquals(List.of("m0", "m2"), written);
+    }
+
+    @Test
+    @DisplayName("Thời gian chờ của người gửi không lớn hơn thời hạn ghi một lô thì từ chối khởi động")
+    public void rejectsSendTimeoutNotExceedingWriteTimeout() {
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> new MessageSequencer(jdbcTemplate, transactionManager, chatMapper, 1, 100, 10, 10_000));
+    }
+
+    private Message message(String content) {
+        User sender = new User();
+        sender.setId(7L);
+        return Message.builder()
+                .chatRoom(ChatRoom.builder().id(5L).build())
+                .sender(sender)
+                .content(content)
+                .messageType(MessageType.TEXT)
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.dto.WebSocketChatMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class TypingStateEngineTests {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Test
+    @DisplayName("Gom sự kiện gõ phím: tối đa một frame mỗi chu kỳ, tự tắt khi hết hạn")
+    public void debouncesTypingEventsAndExpiresIdleUsers() {
+        TypingStateEngine engine = new TypingStateEngine(messagingTemplate, 3000, 6000);
+
+        // 10 sự kiện gõ trong 2 giây: chỉ frame đầu tiên được phát
+        for (int i = 0; i < 10; i++) {
+            engine.onTyping(1L, 7L, true, 1000 + i * 200L);
+        }
+        // Sang chu kỳ tiếp theo: phát lại một lần
+        engine.onTyping(1L, 7L, true, 4000);
+        engine.onTyping(1L, 7L, true, 4500);
+
+        Assertions.assertEquals(0, engine.expireIdle(9000));
+        Assertions.assertEquals(1, engine.expireIdle(10_500));
+        Assertions.assertEquals(0, engine.activeCount());
+
+        // Dừng gõ khi không còn trạng thái: không phát gì
+        engine.onTyping(1L, 7L, false, 11_000);
+
+        ArgumentCaptor<WebSocketChatMessage> frames = ArgumentCaptor.forClass(WebSocketChatMessage.class);
+        Mockito.verify(messagingTemplate, Mockito.times(3))
+                .convertAndSend(Mockito.eq("/topic/chat/1"), frames.capture());
+        Assertions.assertEquals(List.of("true", "true", "false"),
+                frames.getAllValues().stream().map(WebSocketChatMessage::getContent).toList());
+    }
+}
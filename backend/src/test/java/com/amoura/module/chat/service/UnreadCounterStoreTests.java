@@ -0,0 +1,72 @@
+package com.amoura.module.chat.service;
+
+import com.amoura.module.chat.repository.ChatRoomUnreadProjection;
+import com.amoura.module.chat.repository.MessageRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class UnreadCounterStoreTests {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Test
+    @DisplayName("Nạp một lần, cập nhật tăng dần, đối chiếu lại với database khi bị lệch")
+    public void maintainsCountersIncrementally() {
+        Mockito.when(messageRepository.countUnreadMessagesByChatRoomForUser(1L))
+                .thenReturn(List.of(row(10L, 2L), row(11L, 3L)));
+        UnreadCounterStore store = new UnreadCounterStore(messageRepository, messagingTemplate, 60000, 500, 60000);
+
+        Assertions.assertEquals(5, store.getTotalUnread(1L));
+        Assertions.assertEquals(2, store.getRoomUnread(1L, 10L));
+
+        store.messageSent(10L, 1L);
+        store.messageSent(12L, 1L);
+        // User chưa được nạp: bỏ qua, không truy vấn
+        store.messageSent(10L, 2L);
+        Assertions.assertEquals(3, store.getRoomUnread(1L, 10L));
+        Assertions.assertEquals(7, store.getTotalUnread(1L));
+
+        store.roomRead(11L, 1L);
+        store.roomRead(11L, 1L);
+        Assertions.assertEquals(0, store.getRoomUnread(1L, 11L));
+        Assertions.assertEquals(4, store.getTotalUnread(1L));
+
+        Mockito.when(messageRepository.countUnreadMessagesByChatRoomIdAndUserId(10L, 1L)).thenReturn(2L);
+        store.refreshRoom(10L, 1L);
+        Assertions.assertEquals(3, store.getTotalUnread(1L));
+
+        // Database là nguồn đúng: phòng 12 đã được đọc ở nơi khác
+        Mockito.when(messageRepository.countUnreadMessagesByChatRoomForUser(1L)).thenReturn(List.of(row(10L, 2L)));
+        store.reconcile(System.currentTimeMillis());
+        Assertions.assertEquals(2, store.getTotalUnread(1L));
+
+        // 2 lần gửi + 1 lần đọc (lần đọc thứ hai không đổi gì) + refresh + đối chiếu phòng 12
+        Mockito.verify(messagingTemplate, Mockito.times(5))
+                .convertAndSendToUser(Mockito.eq("1"), Mockito.eq("/queue/unread"), Mockito.any(Object.class));
+        Mockito.verify(messageRepository, Mockito.times(2)).countUnreadMessagesByChatRoomForUser(1L);
+        Mockito.verify(messageRepository, Mockito.never()).countUnreadMessagesByChatRoomForUser(2L);
+
+        store.reconcile(System.currentTimeMillis() + 120000);
+        Assertions.assertEquals(0, store.loadedUsers());
+    }
+
+    private ChatRoomUnreadProjection row(Long chatRoomId, Long unreadCount) {
+        return new ChatRoomUnreadProjection() {
+            public Long getChatRoomId() { return chatRoomId; }
+            public Long getUnreadCount() { return unreadCount; }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.amoura.module.user.service;
+
+import com.amoura.module.chat.repository.ChatRoomRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+public class OnlineUserServiceTests {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private ChatRoomRepository chatRoomRepository;
+
+    private OnlineUserService onlineUserService;
+
+    @BeforeEach
+    public void setUp() {
+        onlineUserService = new OnlineUserService(messagingTemplate, chatRoomRepository, new ObjectMapper(), 200);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        onlineUserService.stop();
+    }
+
+    @Test
+    @DisplayName("Nhiều thiết bị: chỉ OFFLINE khi phiên cuối đóng, kết nối lại trong thời gian chờ không phát gì")
+    @SuppressWarnings("unchecked")
+    public void tracksSessionsAndAbsorbsReconnects() throws Exception {
+        Mockito.when(chatRoomRepository.findChatRoomIdsByUserId(1L)).thenReturn(List.of(10L, 11L));
+
+        onlineUserService.sessionConnected(1L, "phone");
+        onlineUserService.sessionConnected(1L, "laptop");
+        onlineUserService.sessionDisconnected(1L, "phone");
+        onlineUserService.sessionDisconnected(1L, "phone");
+        Assertions.assertTrue(onlineUserService.isOnline(1L));
+
+        // Rớt mạng rồi kết nối lại ngay
+        onlineUserService.sessionDisconnected(1L, "laptop");
+        onlineUserService.sessionConnected(1L, "laptop-2");
+        Thread.sleep(400);
+        Assertions.assertTrue(onlineUserService.isOnline(1L));
+
+        onlineUserService.sessionDisconnected(1L, "laptop-2");
+        Assertions.assertTrue(onlineUserService.isOnline(1L));
+        Mockito.verify(messagingTemplate, Mockito.timeout(2000).times(4))
+                .send(Mockito.anyString(), Mockito.any(Message.class));
+        Assertions.assertFalse(onlineUserService.isOnline(1L));
+        Assertions.assertEquals(Map.of(1L, false, 2L, false), onlineUserService.getPresence(List.of(1L, 2L)));
+
+        // ONLINE cho 2 phòng rồi OFFLINE cho 2 phòng; danh sách phòng chỉ truy vấn một lần
+        ArgumentCaptor<Message<byte[]>> sent = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(messagingTemplate, Mockito.times(4)).send(Mockito.anyString(), sent.capture());
+        List<String> statuses = sent.getAllValues().stream()
+                .map(message -> new String(message.getPayload(), StandardCharsets.UTF_8))
+                .toList();
+        Assertions.assertTrue(statuses.get(0).contains("ONLINE") && statuses.get(1).contains("ONLINE"));
+        Assertions.assertTrue(statuses.get(2).contains("OFFLINE") && statuses.get(3).contains("OFFLINE"));
+        Assertions.assertSame(sent.getAllValues().get(2).getPayload(), sent.getAllValues().get(3).getPayload());
+        Mockito.verify(chatRoomRepository, Mockito.times(1)).findChatRoomIdsByUserId(1L);
+    }
+}